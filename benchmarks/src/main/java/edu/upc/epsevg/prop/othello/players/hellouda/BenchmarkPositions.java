@@ -0,0 +1,63 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.GameStatus;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Corpus fix de posicions dels benchmarks. Cada posició es guarda com la
+ * partida que hi porta des de la posició inicial, amb les caselles en
+ * notació columna-fila (a1..h8), de manera que no depèn de com OthelloLib
+ * representi el tauler internament.
+ * @author Arnau Roca y Henok Argudo
+ */
+public class BenchmarkPositions {
+    //  posicions per fase; els benchmarks recorren totes les d'una fase
+    static final int PER_FASE = 4;
+
+    public enum Fase {
+        OBERTURA(
+                "f5f4d3c4e3f6b4c5",
+                "f5f4d3f6g6c4f7c2b3c6",
+                "f5f4f3g4c3e2d3c6h3g5g6b2",
+                "c4c3e6c5d3e3b4b5b6a7c2d2b2a2"),
+        MIGJOC(
+                "c4c5d6e7c6b5a4b7e6c3e8e3e2a6b3f2g2f3d7f6g6d3a8g7b4e1",
+                "c4e3f4c3e2e1d3g5f3g3e6d6f1e7c2b4g2b2h3c1d7c6a4h1f6d2a2g6",
+                "e6f4c3e7f6g6g7d6d8h8f7b2f5f8c7c4a1d7g3h2g5g4h6e8f3h5c8f2b3b4",
+                "c4e3f3g3f6e6f2c5b6e1f7c3g1d3f5c6e2e7b5a6d7d6c2g7f4g2h2e8c7h3h1g8"),
+        FINAL(
+                "f5f4f3d6c5b4c7e7c4b8b5d3c6f6e3g4h5d2b3a4e6g2g3b6e2f2h1c2b7h2f7f8a6a5g1a7b2h4h3g5c3d7a3d1",
+                "f5f6c4g5h5f4g7f7g4h3g3h8e6f3e3h4f8d7h6e7e2c5b6h7c8c7g6d1f2c3h2f1g2b5g8b7c6b4d3d8e1c2a8g1a5a6",
+                "d3c3f5d6b3f6f7g5c4f3d7c2h4a3g2e6f4h1b1e3d2c6a2d1b6b7b2a1g3d8a8h3f2b5e2g4e7a4c8a6e8g7h7c1c5h8c7g1",
+                "c4e3f2b4e6f4b3e7g4g3f5d2b5a4c5c2c1c6d7d6g5g6h2e2e1g1c3f3h5e8h7h3d3b2c8c7a6f6f7a5f1a7b1h1d1g7d8g2h6h4");
+
+        private final String[] partides;
+
+        Fase(String... partides) {
+            this.partides = partides;
+        }
+
+        /**
+         * @return els estats de joc de la fase, en l'ordre del corpus.
+         */
+        public List<GameStatus> estats() {
+            List<GameStatus> estats = new ArrayList<>();
+            for (String partida : partides) {
+                estats.add(Perft.reprodueix(partida));
+            }
+            return estats;
+        }
+
+        /**
+         * @return els taulers de la fase, en l'ordre del corpus.
+         */
+        public List<SearchBoard> taulers() {
+            List<SearchBoard> taulers = new ArrayList<>();
+            for (GameStatus s : estats()) {
+                taulers.add(new SearchBoard(BitBoard.fromStatus(new MyGameStatus(s))));
+            }
+            return taulers;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import java.util.Arrays;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Executa els benchmarks i en deixa el resultat en JSON, per poder comparar
+ * una versió amb l'anterior (per exemple amb jmh.morethan.io).
+ *
+ * Ús: Benchmarks [fitxer.json] [opcions de JMH]
+ * Per exemple, "Benchmarks v2.json SearchBenchmark -p profunditat=8".
+ * @author Arnau Roca y Henok Argudo
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        String fitxer = "jmh-result.json";
+        if (args.length > 0 && args[0].endsWith(".json")) {
+            fitxer = args[0];
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        Options opcions = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .resultFormat(ResultFormatType.JSON)
+                .result(fitxer)
+                .build();
+        new Runner(opcions).run();
+    }
+}
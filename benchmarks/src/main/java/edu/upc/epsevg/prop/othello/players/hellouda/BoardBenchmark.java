@@ -0,0 +1,117 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.GameStatus;
+import java.awt.Point;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Generació de moviments i hash: la versió de GameStatus, que és la que
+ * feien servir els jugadors al principi, al costat de la de bitboards.
+ * Cada operació és la mitjana sobre les posicions d'una fase.
+ * @author Arnau Roca y Henok Argudo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@OperationsPerInvocation(BenchmarkPositions.PER_FASE)
+public class BoardBenchmark {
+    @Param
+    BenchmarkPositions.Fase fase;
+
+    private GameStatus[] estats;
+    private MyGameStatus[] myEstats;
+    private Point[] primers;
+    private SearchBoard[] taulers;
+
+    @Setup
+    public void prepara() {
+        List<GameStatus> l = fase.estats();
+        estats = l.toArray(new GameStatus[0]);
+        myEstats = new MyGameStatus[estats.length];
+        primers = new Point[estats.length];
+        for (int i = 0; i < estats.length; i++) {
+            myEstats[i] = new MyGameStatus(estats[i]);
+            primers[i] = estats[i].getMoves().get(0);
+        }
+        taulers = fase.taulers().toArray(new SearchBoard[0]);
+    }
+
+    @Benchmark
+    public void gameStatusGetMoves(Blackhole bh) {
+        for (GameStatus s : estats) {
+            bh.consume(s.getMoves());
+        }
+    }
+
+    /**
+     * Inclou la còpia de l'estat, que és el que fa la cerca amb GameStatus.
+     */
+    @Benchmark
+    public void gameStatusMovePiece(Blackhole bh) {
+        for (int i = 0; i < estats.length; i++) {
+            GameStatus fill = new GameStatus(estats[i]);
+            fill.movePiece(primers[i]);
+            bh.consume(fill);
+        }
+    }
+
+    @Benchmark
+    public void bitBoardGetMoves(Blackhole bh) {
+        for (SearchBoard t : taulers) {
+            bh.consume(t.getMoves());
+        }
+    }
+
+    /**
+     * Fa i desfà tots els moviments legals, amb el hash i els acumuladors
+     * de l'avaluació incremental.
+     */
+    @Benchmark
+    public void bitBoardMakeUnmake(Blackhole bh) {
+        for (SearchBoard t : taulers) {
+            for (long moves = t.getMoves(); moves != 0; moves &= moves - 1) {
+                int sq = Long.numberOfTrailingZeros(moves);
+                long flips = t.makeMove(sq);
+                bh.consume(t.getHash());
+                t.unmakeMove(sq, flips);
+            }
+        }
+    }
+
+    /**
+     * Hash de Zobrist calculat des de zero.
+     */
+    @Benchmark
+    public void computeHash(Blackhole bh) {
+        for (SearchBoard t : taulers) {
+            bh.consume(t.computeHash());
+        }
+    }
+
+    /**
+     * Conversió de GameStatus a bitboards, amb el hash inicial.
+     */
+    @Benchmark
+    public void fromStatus(Blackhole bh) {
+        for (MyGameStatus s : myEstats) {
+            bh.consume(BitBoard.fromStatus(s));
+        }
+    }
+}
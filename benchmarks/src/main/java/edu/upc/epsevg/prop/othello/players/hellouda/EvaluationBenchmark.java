@@ -0,0 +1,88 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Heurística de les fulles amb l'avaluació de PlayerID: la que fa servir
+ * la cerca, amb els acumuladors de SearchBoard, la calculada des de zero i
+ * la de tot el bloc de posicions d'un cop. També la de PatternEval, amb un
+ * fitxer de pesos de PatternEval.pesosPosicionals escrit en preparar-la.
+ * @author Arnau Roca y Henok Argudo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@OperationsPerInvocation(BenchmarkPositions.PER_FASE)
+public class EvaluationBenchmark {
+    @Param
+    BenchmarkPositions.Fase fase;
+
+    private final Evaluation avaluacio = PlayerID.AVALUACIO;
+    private PatternEval patrons;
+    private SearchBoard[] taulers;
+    private long[] my, opp;
+    private int[] valors;
+
+    @Setup
+    public void prepara() throws IOException {
+        Path pesos = Files.createTempFile("patrons", ".bin");
+        pesos.toFile().deleteOnExit();
+        PatternEval.save(pesos, 4, PatternEval.pesosPosicionals(4));
+        patrons = PatternEval.load(pesos);
+
+        taulers = fase.taulers().toArray(new SearchBoard[0]);
+        my = new long[taulers.length];
+        opp = new long[taulers.length];
+        valors = new int[taulers.length];
+        for (int i = 0; i < taulers.length; i++) {
+            my[i] = taulers[i].getPlayer();
+            opp[i] = taulers[i].getOpponent();
+        }
+    }
+
+    @Benchmark
+    public void heuristica(Blackhole bh) {
+        for (SearchBoard t : taulers) {
+            bh.consume(avaluacio.evaluate(t, t.getCurrentPlayer()));
+        }
+    }
+
+    @Benchmark
+    public void heuristicaCompleta(Blackhole bh) {
+        for (SearchBoard t : taulers) {
+            bh.consume(avaluacio.evaluate(t.getPlayer(), t.getOpponent()));
+        }
+    }
+
+    @Benchmark
+    public void heuristicaPatrons(Blackhole bh) {
+        for (SearchBoard t : taulers) {
+            bh.consume(patrons.evaluate(t.getPlayer(), t.getOpponent()));
+        }
+    }
+
+    @Benchmark
+    public int[] heuristicaEnBloc() {
+        avaluacio.evaluate(my, opp, my.length, valors);
+        return valors;
+    }
+}
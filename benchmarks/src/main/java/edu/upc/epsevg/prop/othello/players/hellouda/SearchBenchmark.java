@@ -0,0 +1,106 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.GameStatus;
+import edu.upc.epsevg.prop.othello.IPlayer;
+import edu.upc.epsevg.prop.othello.Move;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cerca a profunditat fixa amb els dos jugadors. A més de les cerques per
+ * segon, el comptador auxiliar "nodes" dona els nodes per segon segons el
+ * recompte de cada jugador. PlayerID es crea de nou a cada invocació perquè
+ * la taula de transposició de la cerca anterior no la faci més curta.
+ * @author Arnau Roca y Henok Argudo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@OperationsPerInvocation(BenchmarkPositions.PER_FASE)
+public class SearchBenchmark {
+    @Param({"PlayerID", "PlayerMiniMax"})
+    String jugador;
+
+    @Param
+    BenchmarkPositions.Fase fase;
+
+    @Param({"6"})
+    int profunditat;
+
+    @Param({"1"})
+    int fils;
+
+    private List<GameStatus> estats;
+    private IPlayer player;
+
+    /**
+     * Nodes explorats, normalitzats per JMH com a nodes per segon.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reinicia() {
+            nodes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void prepara() {
+        estats = fase.estats();
+    }
+
+    @Setup(Level.Invocation)
+    public void creaJugador() {
+        if (jugador.equals("PlayerID")) {
+            PlayerID p = new PlayerID(16, fils);
+            //  profmax és exclusiu
+            p.setProfMax(profunditat + 1);
+            p.setEndgameEmpties(0);
+            player = p;
+        } else if (player == null) {
+            //  PlayerMiniMax no guarda res entre cerques: n'hi ha prou amb un
+            PlayerMiniMax p = new PlayerMiniMax(fils);
+            p.setProfMax(profunditat);
+            player = p;
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tancaJugador() {
+        //  els fils ajudants de cada PlayerID no es tornen a fer servir
+        if (player instanceof PlayerID) {
+            ((PlayerID) player).close();
+        }
+    }
+
+    @Benchmark
+    public Move cerca(Nodes n) {
+        Move m = null;
+        for (GameStatus s : estats) {
+            m = player.move(new GameStatus(s));
+            n.nodes += m.getNumerOfNodesExplored();
+        }
+        return m;
+    }
+}
@@ -0,0 +1,67 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Consulta i escriptura a la taula de transposició. La taula s'omple abans
+ * de mesurar i les claus es reparteixen a l'atzar, com a la cerca, de manera
+ * que el que es mesura són sobretot les fallades de memòria cau; la meitat
+ * de les consultes són de claus que hi són.
+ * @author Arnau Roca y Henok Argudo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TranspositionTableBenchmark {
+    private static final int CLAUS = 1 << 16;
+
+    @Param({"64", "512"})
+    int mb;
+
+    private TranspositionTable taula;
+    private final long[] claus = new long[CLAUS];
+    private int i;
+
+    @Setup
+    public void prepara() {
+        taula = new TranspositionTable(mb);
+        SplittableRandom r = new SplittableRandom(15);
+        long entrades = taula.getCapacity();
+        for (long n = 0; n < entrades; n++) {
+            taula.store(r.nextLong(), r.nextInt(64), r.nextInt(1, 20), r.nextInt(-5000, 5000), TranspositionTable.EXACTA);
+        }
+        for (int k = 0; k < CLAUS; k++) {
+            claus[k] = r.nextLong();
+            if ((k & 1) == 0) {
+                taula.store(claus[k], k & 63, 10, k, TranspositionTable.EXACTA);
+            }
+        }
+    }
+
+    @Benchmark
+    public long probe() {
+        i = (i + 1) & (CLAUS - 1);
+        return taula.probe(claus[i]);
+    }
+
+    @Benchmark
+    public void store() {
+        i = (i + 1) & (CLAUS - 1);
+        taula.store(claus[i] ^ i, i & 63, i & 15, i, TranspositionTable.INFERIOR);
+    }
+}
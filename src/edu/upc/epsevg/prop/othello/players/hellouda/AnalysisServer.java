@@ -0,0 +1,379 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.upc.epsevg.prop.othello.CellType;
+import edu.upc.epsevg.prop.othello.GameStatus;
+import edu.upc.epsevg.prop.othello.Move;
+import java.awt.Point;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor d'anàlisi local per HTTP. Cada petició és una posició amb un
+ * límit de temps o de profunditat, i la resposta és el millor moviment, el
+ * seu valor i la variant principal en JSON. Quan el moviment ve del solver
+ * final no hi ha variant principal.
+ *
+ * Les cerques es fan en un nombre fix de fils, cadascun amb el seu
+ * PlayerID, i tots comparteixen una sola taula de transposició que es
+ * conserva entre peticions. La generació de la taula no l'avança cada
+ * cerca sinó el servidor, cada GENERACIO_MS si hi ha hagut cerques, perquè
+ * una cerca no faci obsoletes les entrades d'una altra que encara corre.
+ * Si ja hi ha tantes peticions esperant com
+ * admet la cua, es respon 503. Les connexions es llegeixen en tants fils
+ * com cerques, amb una cua acotada, i la resposta l'envia el fil de la
+ * cerca. Les peticions iguals que arriben mentre
+ * una ja s'està cercant esperen el mateix resultat en lloc de repetir la
+ * cerca.
+ *
+ * Només escolta a l'adreça de loopback:
+ *   GET /analitza?partida=f5d6c3&amp;ms=1000&amp;prof=12
+ *   GET /analitza?tauler=...&amp;torn=X&amp;ms=1000
+ *     partida  caselles jugades des de l'inici (format de Perft.reprodueix)
+ *     tauler   en lloc de la partida, les 64 caselles de a1 a h8 per files
+ *              (a1, b1, ..., h1, a2, ...): X per PLAYER1, O per PLAYER2 i
+ *              . o - per les buides
+ *     torn     amb el tauler, qui mou: X o O
+ *     ms       temps màxim de la cerca, per defecte 1000, 0 sense límit
+ *     prof     profunditat màxima, per defecte 0, sense límit; cal
+ *              que hi hagi algun dels dos límits
+ *   GET /estat
+ *
+ * Ús: AnalysisServer [-port=N] [-fils=N] [-cua=N] [-mb=N]
+ * @author Arnau Roca y Henok Argudo
+ */
+public class AnalysisServer {
+    public static final int PORT = 8765;
+    static final long MS_DEFECTE = 1000;
+    //  jugades màximes de la variant principal
+    static final int MAX_PV = 30;
+    //  cada quant s'avança la generació de la taula compartida
+    static final long GENERACIO_MS = 10_000;
+
+    /**
+     * Una posició amb els seus límits; dues peticions iguals comparteixen
+     * la cerca.
+     */
+    static final class Peticio {
+        final GameStatus estat;
+        final long player, opponent;
+        final CellType torn;
+        final long ms;
+        final int prof;
+
+        Peticio(GameStatus estat, long ms, int prof) {
+            BitBoard b = BitBoard.fromStatus(new MyGameStatus(estat));
+            this.estat = estat;
+            this.player = b.getPlayer();
+            this.opponent = b.getOpponent();
+            this.torn = b.getCurrentPlayer();
+            this.ms = ms;
+            this.prof = prof;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Peticio)) {
+                return false;
+            }
+            Peticio p = (Peticio) o;
+            return player == p.player && opponent == p.opponent && torn == p.torn
+                    && ms == p.ms && prof == p.prof;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(player, opponent, torn, ms, prof);
+        }
+    }
+
+    private final TranspositionTable taula;
+    private final BlockingQueue<PlayerID> analistes;
+    private final ThreadPoolExecutor cerques;
+    private final ThreadPoolExecutor connexions;
+    private final Map<Peticio, CompletableFuture<String>> enCurs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService rellotge;
+    //  cerques començades des de l'últim canvi de generació
+    private final AtomicInteger cerquesGeneracio = new AtomicInteger();
+    private final HttpServer servidor;
+
+    /**
+     * @param port port on escolta, a l'adreça de loopback.
+     * @param fils cerques alhora.
+     * @param cua peticions que poden esperar un fil lliure.
+     * @param ttMB mida de la taula de transposició compartida en MB.
+     */
+    public AnalysisServer(int port, int fils, int cua, int ttMB) throws IOException {
+        taula = new TranspositionTable(ttMB);
+        analistes = new ArrayBlockingQueue<>(fils);
+        for (int i = 0; i < fils; i++) {
+            analistes.add(new PlayerID(taula, 1, PlayerID.AVALUACIO));
+        }
+        cerques = new ThreadPoolExecutor(fils, fils, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(cua));
+        //  les connexions només llegeixen la petició i la passen a les
+        //  cerques; a la cua hi caben totes les que les cerques podrien
+        //  acceptar, i si tot i així s'omple el servidor HTTP tanca la
+        //  connexió sense resposta
+        connexions = new ThreadPoolExecutor(fils, fils, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(fils + cua));
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        servidor.createContext("/analitza", this::analitza);
+        servidor.createContext("/estat", this::estat);
+        servidor.setExecutor(connexions);
+        rellotge = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "analysis-generacio");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        servidor.start();
+        rellotge.scheduleAtFixedRate(this::avancaGeneracio, GENERACIO_MS, GENERACIO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deixa d'acceptar peticions, espera les que estan en curs i tanca els
+     * analistes.
+     */
+    public void stop() throws InterruptedException {
+        //  les peticions noves ja reben 503; les respostes de les que estan
+        //  en curs surten dels fils de cerca, abans de tancar les connexions
+        rellotge.shutdownNow();
+        cerques.shutdown();
+        cerques.awaitTermination(1, TimeUnit.MINUTES);
+        servidor.stop(0);
+        connexions.shutdown();
+        for (PlayerID analista : analistes) {
+            analista.close();
+        }
+    }
+
+    private void analitza(HttpExchange intercanvi) throws IOException {
+        Peticio peticio;
+        try {
+            Map<String, String> params = parametres(intercanvi.getRequestURI().getRawQuery());
+            GameStatus estat = posicio(params);
+            if (estat.getMoves().isEmpty()) {
+                throw new IllegalArgumentException("El jugador que mou no té cap moviment");
+            }
+            long ms = Long.parseLong(params.getOrDefault("ms", String.valueOf(MS_DEFECTE)));
+            int prof = Integer.parseInt(params.getOrDefault("prof", "0"));
+            if (ms <= 0 && prof <= 0) {
+                throw new IllegalArgumentException("Cal un límit de temps o de profunditat");
+            }
+            peticio = new Peticio(estat, ms, prof);
+        } catch (IllegalArgumentException e) {
+            respon(intercanvi, 400, error(e.getMessage()));
+            return;
+        }
+
+        CompletableFuture<String> nou = new CompletableFuture<>();
+        CompletableFuture<String> resultat = enCurs.putIfAbsent(peticio, nou);
+        if (resultat == null) {
+            resultat = nou;
+            try {
+                cerques.execute(() -> {
+                    try {
+                        nou.complete(cerca(peticio));
+                    } catch (Throwable t) {
+                        nou.completeExceptionally(t);
+                    } finally {
+                        enCurs.remove(peticio, nou);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                enCurs.remove(peticio, nou);
+                respon(intercanvi, 503, error("Massa peticions en curs"));
+                return;
+            }
+        }
+        //  es respon des del fil de la cerca: el de la connexió queda lliure
+        resultat.whenComplete((json, excepcio) -> {
+            try {
+                if (excepcio == null) {
+                    respon(intercanvi, 200, json);
+                } else {
+                    respon(intercanvi, 500, error(String.valueOf(excepcio)));
+                }
+            } catch (IOException e) {
+                //  el client ja ha tancat la connexió
+                intercanvi.close();
+            }
+        });
+    }
+
+    /**
+     * @return la posició de la petició: el tauler i el torn si n'hi ha, si
+     * no la partida reproduïda des de l'inici.
+     */
+    static GameStatus posicio(Map<String, String> params) {
+        String tauler = params.get("tauler");
+        if (tauler == null) {
+            return Perft.reprodueix(params.getOrDefault("partida", ""));
+        }
+        if (tauler.length() != 64) {
+            throw new IllegalArgumentException("El tauler ha de tenir 64 caselles i en té " + tauler.length());
+        }
+        long player1 = 0, player2 = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            switch (Character.toUpperCase(tauler.charAt(sq))) {
+                case 'X':
+                    player1 |= 1L << sq;
+                    break;
+                case 'O':
+                    player2 |= 1L << sq;
+                    break;
+                case '.':
+                case '-':
+                    break;
+                default:
+                    throw new IllegalArgumentException("Casella desconeguda '" + tauler.charAt(sq) + "'");
+            }
+        }
+        CellType torn;
+        switch (params.getOrDefault("torn", "").toUpperCase(Locale.ROOT)) {
+            case "X":
+                torn = CellType.PLAYER1;
+                break;
+            case "O":
+                torn = CellType.PLAYER2;
+                break;
+            default:
+                throw new IllegalArgumentException("Amb el tauler cal el torn, X o O");
+        }
+        return new MyGameStatus(player1, player2, torn);
+    }
+
+    /**
+     * Les entrades de les cerques d'abans de l'últim tic passen a ser les
+     * primeres a substituir; si no s'ha cercat res, la taula no envelleix.
+     */
+    private void avancaGeneracio() {
+        if (cerquesGeneracio.getAndSet(0) > 0) {
+            taula.newSearch();
+        }
+    }
+
+    /**
+     * Fa la cerca amb un dels analistes lliures.
+     * @return la resposta en JSON.
+     */
+    private String cerca(Peticio peticio) throws InterruptedException {
+        PlayerID jugador = analistes.take();
+        cerquesGeneracio.incrementAndGet();
+        try {
+            jugador.setTimeBudget(peticio.ms);
+            jugador.setProfMax(peticio.prof > 0 ? peticio.prof + 1 : 64);
+            Move m = jugador.move(new GameStatus(peticio.estat));
+            SearchStats stats = jugador.getStats();
+
+            StringBuilder json = new StringBuilder();
+            json.append("{\"moviment\":\"").append(notacio(m.getTo())).append('"')
+                .append(",\"valor\":").append(stats.getValor())
+                .append(",\"profunditat\":").append(m.getMaxDepthReached())
+                .append(",\"nodes\":").append(m.getNumerOfNodesExplored())
+                .append(",\"ms\":").append(stats.getMs())
+                .append(",\"origen\":\"").append(stats.getOrigen()).append('"');
+            //  el solver final no deixa la seva línia a la taula de
+            //  transposició: el que hi hagués seria d'una altra cerca, així que
+            //  no es dona cap pv
+            if (!stats.getOrigen().equals("final")) {
+                GameStatus despres = new GameStatus(peticio.estat);
+                despres.movePiece(m.getTo());
+                json.append(",\"pv\":[\"").append(notacio(m.getTo())).append('"');
+                List<Point> pv = jugador.getPV(despres, MAX_PV - 1);
+                for (Point p : pv) {
+                    json.append(",\"").append(notacio(p)).append('"');
+                }
+                json.append(']');
+            }
+            return json.append('}').toString();
+        } finally {
+            analistes.put(jugador);
+        }
+    }
+
+    private void estat(HttpExchange intercanvi) throws IOException {
+        respon(intercanvi, 200, String.format(Locale.ROOT,
+                "{\"fils\":%d,\"actives\":%d,\"cua\":%d,\"enCurs\":%d,\"ttOcupacio\":%.4f,\"ttBytes\":%d}",
+                cerques.getMaximumPoolSize(), cerques.getActiveCount(), cerques.getQueue().size(),
+                enCurs.size(), taula.getFillRate(), taula.getBytesUsed()));
+    }
+
+    /**
+     * @return la casella en notació columna-fila, "pas" si és null.
+     */
+    static String notacio(Point p) {
+        return p == null ? "pas" : "" + (char) ('a' + p.x) + (char) ('1' + p.y);
+    }
+
+    private static String error(String missatge) {
+        return "{\"error\":\"" + String.valueOf(missatge).replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+
+    private static Map<String, String> parametres(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String parell : query.split("&")) {
+            int igual = parell.indexOf('=');
+            if (igual > 0) {
+                params.put(URLDecoder.decode(parell.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parell.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void respon(HttpExchange intercanvi, int codi, String cos) throws IOException {
+        byte[] bytes = cos.getBytes(StandardCharsets.UTF_8);
+        intercanvi.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercanvi.sendResponseHeaders(codi, bytes.length);
+        try (OutputStream out = intercanvi.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = PORT, fils = Runtime.getRuntime().availableProcessors(), cua = 64;
+        int mb = TranspositionTable.defaultSizeMB();
+        for (String arg : args) {
+            String valor = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("-port=")) {
+                port = Integer.parseInt(valor);
+            } else if (arg.startsWith("-fils=")) {
+                fils = Integer.parseInt(valor);
+            } else if (arg.startsWith("-cua=")) {
+                cua = Integer.parseInt(valor);
+            } else if (arg.startsWith("-mb=")) {
+                mb = Integer.parseInt(valor);
+            } else {
+                throw new IllegalArgumentException("Opció desconeguda " + arg);
+            }
+        }
+        AnalysisServer servidor = new AnalysisServer(port, fils, cua, mb);
+        servidor.start();
+        System.out.println("Analitzant a http://localhost:" + port + "/analitza amb " + fils + " fils");
+    }
+}
@@ -0,0 +1,478 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.CellType;
+import java.awt.Point;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Representació del tauler amb dos enters de 64 bits: les fitxes del jugador
+ * que ha de moure i les del seu contrincant. La casella (x, y) correspon al
+ * bit y*8 + x. Els moviments es fan i es desfan sobre el mateix objecte
+ * (makeMove/unmakeMove), de manera que la cerca no ha de copiar cap tauler.
+ * El hash de Zobrist (color de cada fitxa i jugador que mou) s'actualitza
+ * amb cada moviment, gir i pas.
+ * @author Arnau Roca y Henok Argudo
+ */
+public class BitBoard {
+    //  columnes que no poden rebre bits quan desplacem cap a l'est o cap a l'oest
+    static final long NOT_A_FILE = 0xFEFEFEFEFEFEFEFEL;
+    static final long NOT_H_FILE = 0x7F7F7F7F7F7F7F7FL;
+    //  desplaçaments de les 8 direccions (positiu = <<, negatiu = >>>) i
+    //  la màscara que cal aplicar després de cada desplaçament
+    static final int[] DIR_SHIFT = {1, -1, 8, -8, 9, 7, -7, -9};
+    static final long[] DIR_MASK = {
+        NOT_A_FILE, NOT_H_FILE, -1L, -1L, NOT_A_FILE, NOT_H_FILE, NOT_A_FILE, NOT_H_FILE
+    };
+
+    //  claus de Zobrist: una per casella i color (0 = PLAYER1, 1 = PLAYER2),
+    //  la xor de les dues per girar una fitxa, i una pel torn de PLAYER2
+    static final long[][] ZOBRIST = new long[2][64];
+    static final long[] ZOBRIST_FLIP = new long[64];
+    static final long ZOBRIST_SIDE;
+    static {
+        Random random = new Random(59652323);
+        for (int c = 0; c < 2; c++) {
+            for (int sq = 0; sq < 64; sq++) {
+                ZOBRIST[c][sq] = random.nextLong();
+            }
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            ZOBRIST_FLIP[sq] = ZOBRIST[0][sq] ^ ZOBRIST[1][sq];
+        }
+        ZOBRIST_SIDE = random.nextLong();
+    }
+
+    //  fitxes del jugador que ha de moure i del seu contrincant
+    long player, opponent;
+    //  color del jugador que ha de moure
+    CellType currentPlayer;
+    //  hash de Zobrist de la posició, mantingut incrementalment
+    long hash;
+
+    public BitBoard(long player, long opponent, CellType currentPlayer) {
+        this.player = player;
+        this.opponent = opponent;
+        this.currentPlayer = currentPlayer;
+        this.hash = computeHash();
+    }
+
+    public BitBoard(BitBoard b) {
+        this.player = b.player;
+        this.opponent = b.opponent;
+        this.currentPlayer = b.currentPlayer;
+        this.hash = b.hash;
+    }
+
+    /**
+     * Construeix un BitBoard directament a partir dels BitSet de l'estat de
+     * joc, sense passar per getPos casella a casella.
+     * @param s l'estat de joc actual.
+     * @return el tauler equivalent vist des del jugador que ha de moure.
+     */
+    public static BitBoard fromStatus(MyGameStatus s) {
+        long occupied = toLong(s.getBoard_occupied());
+        long color = toLong(s.getBoard_color()) & occupied;
+        //  el centre sempre és ple i no canvia en transposar: ens diu quin
+        //  color representa el bit 1 de board_color
+        CellType colorUn = ((color >>> toIndex(3, 3)) & 1) != 0
+                ? s.getPos(3, 3) : CellType.opposite(s.getPos(3, 3));
+        //  comprovem que l'ordre dels bits sigui y*8 + x; si el tauler no és
+        //  simètric respecte la diagonal n'hi ha prou amb mirar una casella
+        long diff = (occupied ^ flipDiagonal(occupied)) | (color ^ flipDiagonal(color));
+        if (diff != 0) {
+            int sq = Long.numberOfTrailingZeros(diff);
+            CellType esperat = ((occupied >>> sq) & 1) == 0 ? CellType.EMPTY
+                    : ((color >>> sq) & 1) != 0 ? colorUn : CellType.opposite(colorUn);
+            if (s.getPos(sq & 7, sq >>> 3) != esperat) {
+                occupied = flipDiagonal(occupied);
+                color = flipDiagonal(color);
+            }
+        }
+        long un = color, zero = occupied & ~color;
+        CellType current = s.getCurrentPlayer();
+        return current == colorUn
+                ? new BitBoard(un, zero, current)
+                : new BitBoard(zero, un, current);
+    }
+
+    private static long toLong(BitSet b) {
+        long[] words = b.toLongArray();
+        return words.length == 0 ? 0 : words[0];
+    }
+
+    public static int toIndex(int x, int y) {
+        return (y << 3) | x;
+    }
+
+    public static int toIndex(Point p) {
+        return toIndex(p.x, p.y);
+    }
+
+    public static Point toPoint(int sq) {
+        return new Point(sq & 7, sq >>> 3);
+    }
+
+    /**
+     * Simetria respecte la diagonal principal: la casella (x, y) passa a (y, x).
+     */
+    public static long flipDiagonal(long b) {
+        long t;
+        t = 0x0F0F0F0F00000000L & (b ^ (b << 28));
+        b ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (b ^ (b << 14));
+        b ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (b ^ (b << 7));
+        b ^= t ^ (t >>> 7);
+        return b;
+    }
+
+    /**
+     * Simetria respecte l'eix vertical: la casella (x, y) passa a (7-x, y).
+     */
+    public static long mirrorHorizontal(long b) {
+        b = ((b >>> 1) & 0x5555555555555555L) | ((b & 0x5555555555555555L) << 1);
+        b = ((b >>> 2) & 0x3333333333333333L) | ((b & 0x3333333333333333L) << 2);
+        b = ((b >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((b & 0x0F0F0F0F0F0F0F0FL) << 4);
+        return b;
+    }
+
+    /**
+     * Una de les 8 simetries del tauler: primer es transposa si sim té el
+     * bit 4, després s'inverteix x si té el bit 1 i y si té el bit 2.
+     * @param b màscara de caselles.
+     * @param sim simetria, de 0 (identitat) a 7.
+     * @return la màscara transformada.
+     */
+    public static long symmetry(long b, int sim) {
+        if ((sim & 4) != 0) {
+            b = flipDiagonal(b);
+        }
+        if ((sim & 1) != 0) {
+            b = mirrorHorizontal(b);
+        }
+        if ((sim & 2) != 0) {
+            b = Long.reverseBytes(b);
+        }
+        return b;
+    }
+
+    /**
+     * @return la simetria que desfà sim.
+     */
+    public static int inverseSymmetry(int sim) {
+        //  amb transposició, invertir x abans equival a invertir y després
+        return (sim & 4) == 0 ? sim : 4 | (sim & 1) << 1 | (sim & 2) >>> 1;
+    }
+
+    /**
+     * @return la casella sq transformada per la simetria sim.
+     */
+    public static int symmetrySquare(int sq, int sim) {
+        return Long.numberOfTrailingZeros(symmetry(1L << sq, sim));
+    }
+
+    /**
+     * Forma canònica d'una posició: de les 8 simetries, la que dona el
+     * parell (p, o) més petit, comparant sense signe. Les 8 imatges de p es
+     * treuen de només una transposició, dues inversions de x i quatre de y.
+     * @param p fitxes del jugador que mou.
+     * @param o fitxes del contrincant.
+     * @return la simetria que porta (p, o) a la seva forma canònica; en cas
+     * d'empat, la més petita.
+     */
+    public static int canonicalSymmetry(long p, long o) {
+        long t = flipDiagonal(p);
+        long mp = mirrorHorizontal(p), mt = mirrorHorizontal(t);
+        int millor = 0;
+        long millorP = p, millorO = o;
+        boolean ambO = true;
+        for (int sim = 1; sim < 8; sim++) {
+            long sp = imatge(sim, p, mp, t, mt);
+            int cmp = Long.compareUnsigned(sp, millorP);
+            if (cmp < 0) {
+                millor = sim;
+                millorP = sp;
+                ambO = false;
+            } else if (cmp == 0) {
+                //  empat a p, que només passa amb posicions simètriques
+                if (!ambO) {
+                    millorO = symmetry(o, millor);
+                    ambO = true;
+                }
+                long so = symmetry(o, sim);
+                if (Long.compareUnsigned(so, millorO) < 0) {
+                    millor = sim;
+                    millorO = so;
+                }
+            }
+        }
+        return millor;
+    }
+
+    /**
+     * @return symmetry(p, sim) a partir de les imatges ja calculades de p
+     * (mp = x invertida, t = transposada, mt = transposada i x invertida).
+     */
+    private static long imatge(int sim, long p, long mp, long t, long mt) {
+        long b = (sim & 4) == 0 ? ((sim & 1) == 0 ? p : mp) : ((sim & 1) == 0 ? t : mt);
+        return (sim & 2) == 0 ? b : Long.reverseBytes(b);
+    }
+
+    static int colorIndex(CellType type) {
+        return type == CellType.PLAYER1 ? 0 : 1;
+    }
+
+    /**
+     * Calcula el hash de Zobrist des de zero; la cerca només el fa servir
+     * en construir la posició.
+     * @return el hash de la posició actual.
+     */
+    public long computeHash() {
+        return hash(player, opponent, currentPlayer);
+    }
+
+    /**
+     * Hash de Zobrist d'una posició qualsevol.
+     * @param p fitxes del jugador que mou.
+     * @param o fitxes del contrincant.
+     * @param current color del jugador que mou.
+     * @return el hash que tindria la posició.
+     */
+    public static long hash(long p, long o, CellType current) {
+        int c = colorIndex(current);
+        long h = c == 1 ? ZOBRIST_SIDE : 0;
+        for (long b = p; b != 0; b &= b - 1) {
+            h ^= ZOBRIST[c][Long.numberOfTrailingZeros(b)];
+        }
+        for (long b = o; b != 0; b &= b - 1) {
+            h ^= ZOBRIST[1 - c][Long.numberOfTrailingZeros(b)];
+        }
+        return h;
+    }
+
+    /**
+     * @param flips màscara de fitxes que canvien de color.
+     * @return la part del hash que canvia en girar-les.
+     */
+    static long flipHash(long flips) {
+        long h = 0;
+        for (; flips != 0; flips &= flips - 1) {
+            h ^= ZOBRIST_FLIP[Long.numberOfTrailingZeros(flips)];
+        }
+        return h;
+    }
+
+    static long shift(long b, int dir) {
+        int d = DIR_SHIFT[dir];
+        return (d > 0 ? b << d : b >>> -d) & DIR_MASK[dir];
+    }
+
+    /**
+     * Calcula les caselles on pot tirar el jugador p contra el jugador o.
+     * @param p fitxes del jugador que mou.
+     * @param o fitxes del contrincant.
+     * @return màscara amb un bit per cada moviment legal.
+     */
+    public static long getMoves(long p, long o) {
+        long empty = ~(p | o);
+        //  per als desplaçaments horitzontals i diagonals no deixem passar
+        //  fitxes de les columnes A i H per evitar que saltin de fila
+        long oh = o & 0x7E7E7E7E7E7E7E7EL;
+        long moves = 0, t;
+
+        t = oh & (p << 1); t |= oh & (t << 1); t |= oh & (t << 1);
+        t |= oh & (t << 1); t |= oh & (t << 1); t |= oh & (t << 1);
+        moves |= empty & (t << 1);
+
+        t = oh & (p >>> 1); t |= oh & (t >>> 1); t |= oh & (t >>> 1);
+        t |= oh & (t >>> 1); t |= oh & (t >>> 1); t |= oh & (t >>> 1);
+        moves |= empty & (t >>> 1);
+
+        t = o & (p << 8); t |= o & (t << 8); t |= o & (t << 8);
+        t |= o & (t << 8); t |= o & (t << 8); t |= o & (t << 8);
+        moves |= empty & (t << 8);
+
+        t = o & (p >>> 8); t |= o & (t >>> 8); t |= o & (t >>> 8);
+        t |= o & (t >>> 8); t |= o & (t >>> 8); t |= o & (t >>> 8);
+        moves |= empty & (t >>> 8);
+
+        t = oh & (p << 9); t |= oh & (t << 9); t |= oh & (t << 9);
+        t |= oh & (t << 9); t |= oh & (t << 9); t |= oh & (t << 9);
+        moves |= empty & (t << 9);
+
+        t = oh & (p << 7); t |= oh & (t << 7); t |= oh & (t << 7);
+        t |= oh & (t << 7); t |= oh & (t << 7); t |= oh & (t << 7);
+        moves |= empty & (t << 7);
+
+        t = oh & (p >>> 7); t |= oh & (t >>> 7); t |= oh & (t >>> 7);
+        t |= oh & (t >>> 7); t |= oh & (t >>> 7); t |= oh & (t >>> 7);
+        moves |= empty & (t >>> 7);
+
+        t = oh & (p >>> 9); t |= oh & (t >>> 9); t |= oh & (t >>> 9);
+        t |= oh & (t >>> 9); t |= oh & (t >>> 9); t |= oh & (t >>> 9);
+        moves |= empty & (t >>> 9);
+
+        return moves;
+    }
+
+    /**
+     * Calcula les fitxes que gira el jugador p si tira a la casella sq.
+     * @param p fitxes del jugador que mou.
+     * @param o fitxes del contrincant.
+     * @param sq casella on es tira.
+     * @return màscara de les fitxes del contrincant que canvien de color.
+     */
+    public static long getFlips(long p, long o, int sq) {
+        //  mateixos desplaçaments que getMoves, partint de la casella jugada:
+        //  una línia de fitxes del contrincant es gira si acaba en una de p
+        long m = 1L << sq;
+        long oh = o & 0x7E7E7E7E7E7E7E7EL;
+        long flips = 0, t;
+
+        t = oh & (m << 1); t |= oh & (t << 1); t |= oh & (t << 1);
+        t |= oh & (t << 1); t |= oh & (t << 1); t |= oh & (t << 1);
+        if ((p & (t << 1)) != 0) flips |= t;
+
+        t = oh & (m >>> 1); t |= oh & (t >>> 1); t |= oh & (t >>> 1);
+        t |= oh & (t >>> 1); t |= oh & (t >>> 1); t |= oh & (t >>> 1);
+        if ((p & (t >>> 1)) != 0) flips |= t;
+
+        t = o & (m << 8); t |= o & (t << 8); t |= o & (t << 8);
+        t |= o & (t << 8); t |= o & (t << 8); t |= o & (t << 8);
+        if ((p & (t << 8)) != 0) flips |= t;
+
+        t = o & (m >>> 8); t |= o & (t >>> 8); t |= o & (t >>> 8);
+        t |= o & (t >>> 8); t |= o & (t >>> 8); t |= o & (t >>> 8);
+        if ((p & (t >>> 8)) != 0) flips |= t;
+
+        t = oh & (m << 9); t |= oh & (t << 9); t |= oh & (t << 9);
+        t |= oh & (t << 9); t |= oh & (t << 9); t |= oh & (t << 9);
+        if ((p & (t << 9)) != 0) flips |= t;
+
+        t = oh & (m << 7); t |= oh & (t << 7); t |= oh & (t << 7);
+        t |= oh & (t << 7); t |= oh & (t << 7); t |= oh & (t << 7);
+        if ((p & (t << 7)) != 0) flips |= t;
+
+        t = oh & (m >>> 7); t |= oh & (t >>> 7); t |= oh & (t >>> 7);
+        t |= oh & (t >>> 7); t |= oh & (t >>> 7); t |= oh & (t >>> 7);
+        if ((p & (t >>> 7)) != 0) flips |= t;
+
+        t = oh & (m >>> 9); t |= oh & (t >>> 9); t |= oh & (t >>> 9);
+        t |= oh & (t >>> 9); t |= oh & (t >>> 9); t |= oh & (t >>> 9);
+        if ((p & (t >>> 9)) != 0) flips |= t;
+
+        return flips;
+    }
+
+    public long getMoves() {
+        return getMoves(player, opponent);
+    }
+
+    public long getOpponentMoves() {
+        return getMoves(opponent, player);
+    }
+
+    /**
+     * Tira a la casella sq amb el jugador que ha de moure i passa el torn.
+     * @param sq casella on es tira, ha de ser un moviment legal.
+     * @return les fitxes girades, necessàries per desfer el moviment.
+     */
+    public long makeMove(int sq) {
+        long flips = getFlips(player, opponent, sq);
+        hash ^= ZOBRIST[colorIndex(currentPlayer)][sq] ^ flipHash(flips) ^ ZOBRIST_SIDE;
+        long p = player ^ (flips | (1L << sq));
+        player = opponent ^ flips;
+        opponent = p;
+        currentPlayer = CellType.opposite(currentPlayer);
+        return flips;
+    }
+
+    /**
+     * @param sq casella on es tiraria.
+     * @param flips fitxes que giraria el moviment.
+     * @return el hash que tindria la posició després de tirar a sq, sense
+     * fer el moviment.
+     */
+    long hashAfter(int sq, long flips) {
+        return hash ^ ZOBRIST[colorIndex(currentPlayer)][sq] ^ flipHash(flips) ^ ZOBRIST_SIDE;
+    }
+
+    /**
+     * Desfà el moviment fet amb makeMove.
+     * @param sq casella on s'havia tirat.
+     * @param flips fitxes girades que va retornar makeMove.
+     */
+    public void unmakeMove(int sq, long flips) {
+        long p = opponent ^ (flips | (1L << sq));
+        opponent = player ^ flips;
+        player = p;
+        currentPlayer = CellType.opposite(currentPlayer);
+        hash ^= ZOBRIST[colorIndex(currentPlayer)][sq] ^ flipHash(flips) ^ ZOBRIST_SIDE;
+    }
+
+    /**
+     * Passa el torn sense tirar (també serveix per desfer un pas).
+     */
+    public void pass() {
+        long p = player;
+        player = opponent;
+        opponent = p;
+        currentPlayer = CellType.opposite(currentPlayer);
+        hash ^= ZOBRIST_SIDE;
+    }
+
+    /**
+     * @return true si cap dels dos jugadors pot tirar.
+     */
+    public boolean isGameOver() {
+        return getMoves() == 0 && getOpponentMoves() == 0;
+    }
+
+    public CellType getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public long getPlayer() {
+        return player;
+    }
+
+    public long getOpponent() {
+        return opponent;
+    }
+
+    /**
+     * @param type color del jugador.
+     * @return les fitxes d'aquest color.
+     */
+    public long getDiscs(CellType type) {
+        return type == currentPlayer ? player : type == CellType.opposite(currentPlayer) ? opponent : ~(player | opponent);
+    }
+
+    public int getScore(CellType type) {
+        return Long.bitCount(getDiscs(type));
+    }
+
+    public int getEmptyCount() {
+        return 64 - Long.bitCount(player | opponent);
+    }
+
+    public int getSize() {
+        return 8;
+    }
+
+    public CellType getPos(int x, int y) {
+        long bit = 1L << toIndex(x, y);
+        if ((player & bit) != 0) {
+            return currentPlayer;
+        }
+        if ((opponent & bit) != 0) {
+            return CellType.opposite(currentPlayer);
+        }
+        return CellType.EMPTY;
+    }
+}
@@ -0,0 +1,489 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Resolució exacta dels finals de partida. Cerca negamax amb poda
+ * alpha-beta fins al final, on el valor és la diferència de fitxes des del
+ * punt de vista del jugador que mou (les caselles buides es compten pel
+ * guanyador). Amb la finestra (-1, 1) només diu si es guanya, s'empata o es
+ * perd (WLD), que és molt més ràpid; amb (-64, 64) dona la diferència exacta.
+ *
+ * Ordenació dels moviments:
+ *   - amb molts buits, fastest-first: primer els moviments que deixen el
+ *     contrincant amb menys mobilitat;
+ *   - amb pocs buits, paritat: primer les caselles dels quadrants amb un
+ *     nombre senar de buits;
+ *   - els últims 4 buits es resolen amb funcions desplegades, sense
+ *     generar moviments.
+ * @author Arnau Roca y Henok Argudo
+ */
+public class EndgameSolver {
+    //  a partir de quants buits s'ordena per mobilitat del contrincant
+    static final int BUITS_FASTEST_FIRST = 7;
+    //  cada quants nodes es mira si s'ha d'aturar
+    private static final long MASCARA_ABORT = 0xFFF;
+    private static final int INF = 65;
+    //  a partir de quants buits es fa servir la taula del solver
+    static final int BUITS_TAULA = 9;
+    //  entrades de la taula (potència de 2); cada una són 3 long: p, o i dades
+    static final int BITS_TAULA = 20;
+    //  moviments ordenats i claus de cada nivell, indexats per buits
+    private final int[][] ordres = new int[61][32];
+    private final int[][] claus = new int[61][32];
+
+    //  quadrant de cada casella (bit 0..3)
+    static final int[] QUADRANT = new int[64];
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int x = sq & 7, y = sq >>> 3;
+            QUADRANT[sq] = 1 << ((y >= 4 ? 2 : 0) + (x >= 4 ? 1 : 0));
+        }
+    }
+
+    /**
+     * Resultat de resoldre l'arrel.
+     */
+    public static class Resultat {
+        //  millor casella trobada
+        public final int sq;
+        //  valor des del punt de vista del jugador que mou
+        public final int score;
+        //  false si la cerca s'ha aturat abans d'acabar
+        public final boolean complet;
+
+        Resultat(int sq, int score, boolean complet) {
+            this.sq = sq;
+            this.score = score;
+            this.complet = complet;
+        }
+    }
+
+    private final BooleanSupplier aborta;
+    private long nodes;
+    private boolean aturat;
+    //  cotes inferior i superior del valor de posicions ja resoltes; com que
+    //  són valors exactes de final de partida, serveixen d'una jugada a l'altra
+    private final long[] taula = new long[3 << BITS_TAULA];
+
+    /**
+     * @param aborta es consulta de tant en tant; si retorna true la cerca
+     *               s'atura i el resultat queda incomplet.
+     */
+    public EndgameSolver(BooleanSupplier aborta) {
+        this.aborta = aborta;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return el resultat (guanya > 0, empata 0, perd < 0) per al jugador p.
+     */
+    public Resultat solveWLD(long p, long o) {
+        return solveRoot(p, o, -1, 1);
+    }
+
+    /**
+     * @return la diferència de fitxes final amb joc perfecte per al jugador p.
+     */
+    public Resultat solveExact(long p, long o) {
+        return solveRoot(p, o, -INF + 1, INF - 1);
+    }
+
+    /**
+     * Diferència exacta sabent ja el resultat WLD, que fixa el signe i
+     * permet començar amb la meitat de la finestra.
+     * @param wld resultat de solveWLD sobre la mateixa posició.
+     */
+    public Resultat solveExact(long p, long o, Resultat wld) {
+        if (wld.score > 0) {
+            return solveRoot(p, o, 0, INF - 1);
+        } else if (wld.score < 0) {
+            return solveRoot(p, o, -INF + 1, 0);
+        }
+        return wld;
+    }
+
+    /**
+     * Resol l'arrel dins la finestra (alpha, beta). Si la cerca s'atura, la
+     * casella és la millor dels fills acabats o, si no n'hi ha cap, la
+     * primera segons l'ordenació.
+     * @param p fitxes del jugador que mou, que ha de tenir algun moviment.
+     * @param o fitxes del contrincant.
+     * @return la millor casella i el seu valor.
+     */
+    public Resultat solveRoot(long p, long o, int alpha, int beta) {
+        aturat = false;
+        int buits = Long.bitCount(~(p | o));
+        int[] ordre = ordres[buits];
+        int n = ordena(p, o, BitBoard.getMoves(p, o), ordre, buits, true);
+        int best = -INF, bestSq = n > 0 ? ordre[0] : -1;
+        for (int i = 0; i < n && !aturat; i++) {
+            int sq = ordre[i];
+            long f = BitBoard.getFlips(p, o, sq);
+            int v = -solve(o & ~f, p | f | 1L << sq, -beta, -alpha, buits - 1);
+            if (aturat) {
+                break;
+            }
+            if (v > best) {
+                best = v;
+                bestSq = sq;
+            }
+            if (v > alpha) {
+                alpha = v;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return new Resultat(bestSq, best, !aturat);
+    }
+
+    /**
+     * Ordena els moviments de p a ordre.
+     * @return quants moviments hi ha.
+     */
+    private int ordena(long p, long o, long moves, int[] ordre, int buits, boolean fastestFirst) {
+        int paritat = paritat(~(p | o));
+        int n = 0;
+        if (fastestFirst) {
+            int[] clau = claus[buits];
+            for (long b = moves; b != 0; b &= b - 1) {
+                int sq = Long.numberOfTrailingZeros(b);
+                long f = BitBoard.getFlips(p, o, sq);
+                long np = p | f | 1L << sq, no = o & ~f;
+                //  menys mobilitat del contrincant primer; a igualtat, paritat senar
+                int k = 2 * Long.bitCount(BitBoard.getMoves(no, np))
+                        + ((paritat & QUADRANT[sq]) != 0 ? 0 : 1);
+                int i = n++;
+                while (i > 0 && clau[i - 1] > k) {
+                    clau[i] = clau[i - 1];
+                    ordre[i] = ordre[i - 1];
+                    i--;
+                }
+                clau[i] = k;
+                ordre[i] = sq;
+            }
+        } else {
+            long senars = 0;
+            for (int q = 0; q < 4; q++) {
+                if ((paritat & (1 << q)) != 0) {
+                    senars |= QUADRANT_MASK[q];
+                }
+            }
+            for (long b = moves & senars; b != 0; b &= b - 1) {
+                ordre[n++] = Long.numberOfTrailingZeros(b);
+            }
+            for (long b = moves & ~senars; b != 0; b &= b - 1) {
+                ordre[n++] = Long.numberOfTrailingZeros(b);
+            }
+        }
+        return n;
+    }
+
+    static final long[] QUADRANT_MASK = {
+        0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    /**
+     * @return bit q a 1 si el quadrant q té un nombre senar de buits.
+     */
+    static int paritat(long empty) {
+        int paritat = 0;
+        for (int q = 0; q < 4; q++) {
+            paritat |= (Long.bitCount(empty & QUADRANT_MASK[q]) & 1) << q;
+        }
+        return paritat;
+    }
+
+    /**
+     * @return diferència de fitxes d'una partida acabada; els buits són del guanyador.
+     */
+    static int valorFinal(long p, long o) {
+        int pc = Long.bitCount(p), oc = Long.bitCount(o);
+        int diff = pc - oc, buits = 64 - pc - oc;
+        if (diff > 0) {
+            return diff + buits;
+        } else if (diff < 0) {
+            return diff - buits;
+        }
+        return 0;
+    }
+
+    /**
+     * @return true si la casella és d'un quadrant amb un nombre parell de buits.
+     */
+    private static boolean parell(int paritat, int sq) {
+        return (paritat & QUADRANT[sq]) == 0;
+    }
+
+    private int solve(long p, long o, int alpha, int beta, int buits) {
+        if (buits <= 4) {
+            long empty = ~(p | o);
+            if (buits == 0) {
+                return valorFinal(p, o);
+            }
+            int x1 = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            if (buits == 1) {
+                return solve1(p, o, x1);
+            }
+            int x2 = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            if (buits == 2) {
+                return solve2(p, o, alpha, beta, x1, x2);
+            }
+            int x3 = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            if (buits == 3) {
+                return solve3(p, o, alpha, beta, x1, x2, x3);
+            }
+            return solve4(p, o, alpha, beta, x1, x2, x3, Long.numberOfTrailingZeros(empty));
+        }
+
+        if ((++nodes & MASCARA_ABORT) == 0 && aborta.getAsBoolean()) {
+            aturat = true;
+        }
+        if (aturat) {
+            return 0;
+        }
+
+        long moves = BitBoard.getMoves(p, o);
+        if (moves == 0) {
+            if (BitBoard.getMoves(o, p) == 0) {
+                return valorFinal(p, o);
+            }
+            return -solve(o, p, -beta, -alpha, buits);
+        }
+
+        int entrada = -1, bestStored = -1;
+        int alphaInicial = alpha;
+        if (buits >= BUITS_TAULA) {
+            entrada = entrada(p, o);
+            if (taula[entrada] == p && taula[entrada + 1] == o) {
+                long dades = taula[entrada + 2];
+                int inferior = inferior(dades), superior = superior(dades);
+                if (inferior >= beta) {
+                    return inferior;
+                }
+                if (superior <= alpha) {
+                    return superior;
+                }
+                if (inferior == superior) {
+                    return inferior;
+                }
+                alpha = Math.max(alpha, inferior);
+                beta = Math.min(beta, superior);
+                alphaInicial = alpha;
+                bestStored = moviment(dades);
+            }
+        }
+
+        int[] ordre = ordres[buits];
+        int n = ordena(p, o, moves, ordre, buits, buits > BUITS_FASTEST_FIRST);
+        if (bestStored >= 0) {
+            //  el millor fill guardat passa al davant
+            for (int i = 1; i < n; i++) {
+                if (ordre[i] == bestStored) {
+                    System.arraycopy(ordre, 0, ordre, 1, i);
+                    ordre[0] = bestStored;
+                    break;
+                }
+            }
+        }
+        int best = -INF, bestSq = -1;
+        for (int i = 0; i < n; i++) {
+            int sq = ordre[i];
+            long f = BitBoard.getFlips(p, o, sq);
+            int v = -solve(o & ~f, p | f | 1L << sq, -beta, -alpha, buits - 1);
+            if (v > best) {
+                best = v;
+                bestSq = sq;
+                if (v > alpha) {
+                    alpha = v;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (entrada >= 0 && !aturat) {
+            guarda(entrada, p, o, best, alphaInicial, beta, bestSq);
+        }
+        return best;
+    }
+
+    private static int entrada(long p, long o) {
+        long h = p * 0x9E3779B97F4A7C15L ^ o * 0xC2B2AE3D27D4EB4FL;
+        return 3 * (int) (h >>> (64 - BITS_TAULA));
+    }
+
+    /**
+     * Guarda el valor d'una cerca feta amb la finestra (alpha, beta): per
+     * sota d'alpha només és una cota superior, per sobre de beta una
+     * d'inferior. Si la posició ja hi era, les cotes es combinen.
+     */
+    private void guarda(int entrada, long p, long o, int valor, int alpha, int beta, int sq) {
+        int inferior = -INF, superior = INF;
+        if (taula[entrada] == p && taula[entrada + 1] == o) {
+            inferior = inferior(taula[entrada + 2]);
+            superior = superior(taula[entrada + 2]);
+        }
+        if (valor > alpha) {
+            inferior = Math.max(inferior, valor);
+        }
+        if (valor < beta) {
+            superior = Math.min(superior, valor);
+        }
+        taula[entrada] = p;
+        taula[entrada + 1] = o;
+        taula[entrada + 2] = (inferior + INF) | (superior + INF) << 8 | (sq & 0xFF) << 16;
+    }
+
+    private static int inferior(long dades) {
+        return (int) (dades & 0xFF) - INF;
+    }
+
+    private static int superior(long dades) {
+        return (int) (dades >>> 8 & 0xFF) - INF;
+    }
+
+    private static int moviment(long dades) {
+        return (byte) (dades >>> 16);
+    }
+
+    /**
+     * Gira les fitxes només si la casella toca alguna fitxa del contrincant.
+     */
+    private static long flips(long p, long o, int sq) {
+        return (SearchBoard.NEIGHBOURS[sq] & o) == 0 ? 0 : BitBoard.getFlips(p, o, sq);
+    }
+
+    /**
+     * Última casella buida: no cal cap finestra.
+     */
+    private int solve1(long p, long o, int x1) {
+        nodes++;
+        long f = flips(p, o, x1);
+        if (f != 0) {
+            return 2 * (Long.bitCount(p | f) + 1) - 64;
+        }
+        f = flips(o, p, x1);
+        if (f != 0) {
+            return 64 - 2 * (Long.bitCount(o | f) + 1);
+        }
+        return valorFinal(p, o);
+    }
+
+    private int solve2(long p, long o, int alpha, int beta, int x1, int x2) {
+        nodes++;
+        int best = -INF;
+        long f;
+        if ((f = flips(p, o, x1)) != 0) {
+            best = -solve1(o & ~f, p | f | 1L << x1, x2);
+            if (best >= beta) {
+                return best;
+            }
+        }
+        if ((f = flips(p, o, x2)) != 0) {
+            best = Math.max(best, -solve1(o & ~f, p | f | 1L << x2, x1));
+        }
+        if (best == -INF) {
+            //  p passa: si el contrincant tampoc pot tirar s'ha acabat
+            if (flips(o, p, x1) == 0 && flips(o, p, x2) == 0) {
+                return valorFinal(p, o);
+            }
+            return -solve2(o, p, -beta, -alpha, x1, x2);
+        }
+        return best;
+    }
+
+    private int solve3(long p, long o, int alpha, int beta, int x1, int x2, int x3) {
+        nodes++;
+        int best = -INF;
+        long f;
+        if ((f = flips(p, o, x1)) != 0) {
+            best = -solve2(o & ~f, p | f | 1L << x1, -beta, -alpha, x2, x3);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        if ((f = flips(p, o, x2)) != 0) {
+            best = Math.max(best, -solve2(o & ~f, p | f | 1L << x2, -beta, -alpha, x1, x3));
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        if ((f = flips(p, o, x3)) != 0) {
+            best = Math.max(best, -solve2(o & ~f, p | f | 1L << x3, -beta, -alpha, x1, x2));
+        }
+        if (best == -INF) {
+            if (flips(o, p, x1) == 0 && flips(o, p, x2) == 0 && flips(o, p, x3) == 0) {
+                return valorFinal(p, o);
+            }
+            return -solve3(o, p, -beta, -alpha, x1, x2, x3);
+        }
+        return best;
+    }
+
+    /**
+     * Amb 4 buits, primer s'ordenen per paritat: les caselles dels
+     * quadrants amb un nombre senar de buits van primer.
+     */
+    private int solve4(long p, long o, int alpha, int beta, int x1, int x2, int x3, int x4) {
+        nodes++;
+        int paritat = QUADRANT[x1] ^ QUADRANT[x2] ^ QUADRANT[x3] ^ QUADRANT[x4];
+        //  ordenació estable de 4 elements amb intercanvis de veïns
+        int t;
+        for (int pas = 0; pas < 3; pas++) {
+            if (parell(paritat, x1) && !parell(paritat, x2)) {
+                t = x1; x1 = x2; x2 = t;
+            }
+            if (parell(paritat, x2) && !parell(paritat, x3)) {
+                t = x2; x2 = x3; x3 = t;
+            }
+            if (parell(paritat, x3) && !parell(paritat, x4)) {
+                t = x3; x3 = x4; x4 = t;
+            }
+        }
+
+        int best = -INF;
+        long f;
+        if ((f = flips(p, o, x1)) != 0) {
+            best = -solve3(o & ~f, p | f | 1L << x1, -beta, -alpha, x2, x3, x4);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        if ((f = flips(p, o, x2)) != 0) {
+            best = Math.max(best, -solve3(o & ~f, p | f | 1L << x2, -beta, -alpha, x1, x3, x4));
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        if ((f = flips(p, o, x3)) != 0) {
+            best = Math.max(best, -solve3(o & ~f, p | f | 1L << x3, -beta, -alpha, x1, x2, x4));
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        if ((f = flips(p, o, x4)) != 0) {
+            best = Math.max(best, -solve3(o & ~f, p | f | 1L << x4, -beta, -alpha, x1, x2, x3));
+        }
+        if (best == -INF) {
+            if (flips(o, p, x1) == 0 && flips(o, p, x2) == 0
+                    && flips(o, p, x3) == 0 && flips(o, p, x4) == 0) {
+                return valorFinal(p, o);
+            }
+            return -solve4(o, p, -beta, -alpha, x1, x2, x3, x4);
+        }
+        return best;
+    }
+}
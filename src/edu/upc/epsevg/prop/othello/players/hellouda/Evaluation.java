@@ -0,0 +1,422 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.CellType;
+
+/**
+ * Heurística dels jugadors calculada directament sobre bitboards. Dona
+ * exactament el mateix valor que l'antiga heuristica feta amb getPos, però
+ * amb popcounts, desplaçaments i taules precalculades, i sense crear cap
+ * objecte a cada fulla.
+ *
+ * Termes (tots des del punt de vista de "my"):
+ *   p    paritat de fitxes
+ *   c    corners ocupats
+ *   m    mobilitat (parells fitxa-direcció que acaben en un moviment)
+ *   f    fitxes frontera (parells fitxa-direcció amb una casella buida)
+ *   d    taula de pesos, amb les piràmides dels corners ocupats a 0
+ *   xox  patrons X-O-X a les vores
+ *   pi   piràmides estables als corners
+ * @author Arnau Roca y Henok Argudo
+ */
+public class Evaluation implements Evaluator {
+    //  Matriu de pesos, V[x][y]
+    static final int[][] V = {
+        {20, -15, 8, 8, 8, 8, -15, 20},
+        {-15, -17, -4, 1, 1, -4, -17, -15},
+        {8, -4, 2, 2, 2, 2, -4, 8},
+        {8, 1, 2, -3, -3, 2, 1, 8},
+        {8, 1, 2, -3, -3, 2, 1, 8},
+        {8, -4, 2, 2, 2, 2, -4, 11},
+        {-15, -17, -4, 1, 1, -4, -17, -15},
+        {20, -15, 8, 8, 8, 11, -15, 20}
+    };
+    //  pes de cada casella (y*8 + x)
+    static final int[] PES = new int[64];
+    //  la matriu agrupada per valors: una màscara de caselles per cada pes
+    static final int[] PES_VALOR;
+    static final long[] PES_MASCARA;
+
+    static final long CORNERS = 0x8100000000000081L;
+    //  piràmide de cada corner: les 10 caselles amb x+y <= 3 comptant des del corner
+    static final int[] X2 = {0,1,0,2,0,1,2,1,3,0};
+    static final int[] Y2 = {0,0,1,0,2,1,1,2,0,3};
+    static final int[] CORNER_SQ = new int[4];
+    static final long[] PIRAMIDE = new long[4];
+
+    //  BASE3[b] = suma de 3^k per cada bit k de b, per indexar una vora en base 3
+    static final int[] BASE3 = new int[256];
+    static final int EDGE_INDEXS = 6561;
+    //  FIRST[vora]: primera casella 0..4 ocupada de la primera vora, el seu
+    //  color i el recompte X-O-X d'aquesta vora (veure primeraVora)
+    static final int[] FIRST = new int[EDGE_INDEXS];
+    //  SEGONA[vora * CODIS + codi]: recomptes de la segona vora segons on
+    //  s'ha trobat la primera fitxa de la primera; nibble baix "my", alt "opp"
+    static final int CODIS = 11;
+    static final byte[] SEGONA_DOBLE = new byte[EDGE_INDEXS * CODIS];
+    static final byte[] SEGONA_SIMPLE = new byte[EDGE_INDEXS * CODIS];
+
+    static {
+        int[] valors = new int[64];
+        long[] mascares = new long[64];
+        int n = 0;
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                int k = 0;
+                while (k < n && valors[k] != V[x][y]) {
+                    k++;
+                }
+                if (k == n) {
+                    valors[n++] = V[x][y];
+                }
+                mascares[k] |= 1L << BitBoard.toIndex(x, y);
+                PES[BitBoard.toIndex(x, y)] = V[x][y];
+            }
+        }
+        PES_VALOR = java.util.Arrays.copyOf(valors, n);
+        PES_MASCARA = java.util.Arrays.copyOf(mascares, n);
+
+        int[][] corners = {{0, 0, 1, 1}, {0, 7, 1, -1}, {7, 0, -1, 1}, {7, 7, -1, -1}};
+        for (int c = 0; c < 4; c++) {
+            CORNER_SQ[c] = BitBoard.toIndex(corners[c][0], corners[c][1]);
+            for (int i = 0; i < 10; i++) {
+                int xm = corners[c][0] + corners[c][2] * X2[i];
+                int ym = corners[c][1] + corners[c][3] * Y2[i];
+                PIRAMIDE[c] |= 1L << BitBoard.toIndex(xm, ym);
+            }
+        }
+
+        for (int b = 0; b < 256; b++) {
+            int pot = 1;
+            for (int k = 0; k < 8; k++) {
+                if ((b & (1 << k)) != 0) {
+                    BASE3[b] += pot;
+                }
+                pot *= 3;
+            }
+        }
+        int[] vora = new int[8];
+        for (int idx = 0; idx < EDGE_INDEXS; idx++) {
+            int r = idx;
+            for (int k = 0; k < 8; k++) {
+                vora[k] = r % 3;
+                r /= 3;
+            }
+            FIRST[idx] = primeraVora(vora);
+            for (int codi = 0; codi < CODIS; codi++) {
+                SEGONA_DOBLE[idx * CODIS + codi] = segonaVora(vora, codi, true);
+                SEGONA_SIMPLE[idx * CODIS + codi] = segonaVora(vora, codi, false);
+            }
+        }
+    }
+
+    //  estats d'una casella dins l'índex en base 3 d'una vora
+    private static final int MY = 1, OPP = 2;
+
+    /**
+     * Recorre la primera vora fins a la primera casella ocupada i0 (0..4).
+     * @return codi = 2*i0 + (0 si és de l'oponent, 1 si és nostra), o 10 si
+     *         no n'hi ha cap, amb el recompte "my" als bits 4-7 i "opp" als 8-11.
+     */
+    private static int primeraVora(int[] a) {
+        for (int i = 0; i < 5; i++) {
+            if (a[i] == OPP) {
+                int my = (a[i + 2] == OPP && a[i + 1] == MY) ? 1 : 0;
+                return 2 * i | my << 4;
+            }
+            if (a[i] == MY) {
+                int opp = (a[i + 2] == MY && a[i + 1] == OPP) ? 1 : 0;
+                return (2 * i + 1) | opp << 8;
+            }
+        }
+        return 10;
+    }
+
+    /**
+     * Recomptes X-O-X de la segona vora. Un cop trobada la primera fitxa de
+     * la primera vora, la resta de comprovacions es fan sobre la segona, on
+     * la comprovació "opp" es fa dues vegades. doble indica si la
+     * comprovació "my" també es fa dues vegades.
+     */
+    private static byte segonaVora(int[] b, int codi, boolean doble) {
+        if (codi == 10) {
+            return 0;
+        }
+        int i0 = codi >> 1;
+        int my = 0, opp = 0;
+        if ((codi & 1) == 0) {
+            if (doble && b[i0 + 2] == OPP && b[i0 + 1] == MY) {
+                my++;
+            }
+            if (b[i0] == MY && b[i0 + 2] == MY && b[i0 + 1] == OPP) {
+                opp += 2;
+            }
+        } else if (b[i0 + 2] == MY && b[i0 + 1] == OPP) {
+            opp++;
+        }
+        for (int i = i0 + 1; i < 5; i++) {
+            if (b[i] == OPP && b[i + 2] == OPP && b[i + 1] == MY) {
+                my += doble ? 2 : 1;
+            }
+            if (b[i] == MY && b[i + 2] == MY && b[i + 1] == OPP) {
+                opp += 2;
+            }
+        }
+        return (byte) (my | opp << 4);
+    }
+
+    //  coeficients del balanceig final
+    private final int kParitat, kCorners, kMobilitat, kFrontera, kPesos, kXox, kPiramide;
+    //  false per mantenir el recompte de les columnes de PlayerMiniMax, on
+    //  la segona comprovació "my" no es feia mai
+    private final boolean columnesDobles;
+    //  acumulats de evaluate en bloc, un per fil perquè l'avaluació es
+    //  comparteix; MAX_BLOC cobreix els moviments d'una posició real
+    static final int MAX_BLOC = 32;
+    private final ThreadLocal<double[]> acumulats = ThreadLocal.withInitial(() -> new double[MAX_BLOC]);
+
+    public Evaluation(int kParitat, int kCorners, int kMobilitat, int kFrontera, int kPesos,
+            int kXox, int kPiramide, boolean columnesDobles) {
+        this.kParitat = kParitat;
+        this.kCorners = kCorners;
+        this.kMobilitat = kMobilitat;
+        this.kFrontera = kFrontera;
+        this.kPesos = kPesos;
+        this.kXox = kXox;
+        this.kPiramide = kPiramide;
+        this.columnesDobles = columnesDobles;
+    }
+
+    /**
+     * Funció que retorna la heuristica de un estat de joc determinat.
+     * @param my fitxes del jugador per qui avaluem.
+     * @param opp fitxes del seu contrincant.
+     * @return un valor numéric que representa la heuristica del estat de joc actual.
+     */
+    @Override
+    public int evaluate(long my, long opp) {
+        long empty = ~(my | opp);
+        long sensePes = piramides(my, opp);
+        return combina(Long.bitCount(my), Long.bitCount(opp),
+                Long.bitCount(my & CORNERS), Long.bitCount(opp & CORNERS),
+                frontera(my, empty), frontera(opp, empty),
+                pesos(my & ~sensePes, opp & ~sensePes), my, opp);
+    }
+
+    /**
+     * Avalua el bloc terme a terme: cada bucle calcula un sol terme per a
+     * totes les posicions i l'afegeix al seu acumulat. Els termes se sumen
+     * en el mateix ordre que a combina, així que els valors són exactament
+     * els de evaluate(my, opp).
+     */
+    @Override
+    public void evaluate(long[] my, long[] opp, int n, int[] valors) {
+        double[] acc = acumulats.get();
+        if (acc.length < n) {
+            acc = new double[n];
+            acumulats.set(acc);
+        }
+        for (int i = 0; i < n; i++) {
+            acc[i] = kParitat * ratio(Long.bitCount(my[i]), Long.bitCount(opp[i]));
+        }
+        for (int i = 0; i < n; i++) {
+            acc[i] += kCorners * (25.0 * (Long.bitCount(my[i] & CORNERS) - Long.bitCount(opp[i] & CORNERS)));
+        }
+        for (int i = 0; i < n; i++) {
+            acc[i] += kMobilitat * ratio(mobilitat(my[i], opp[i]), mobilitat(opp[i], my[i]));
+        }
+        for (int i = 0; i < n; i++) {
+            long empty = ~(my[i] | opp[i]);
+            acc[i] += kFrontera * -ratio(frontera(my[i], empty), frontera(opp[i], empty));
+        }
+        for (int i = 0; i < n; i++) {
+            long sensePes = piramides(my[i], opp[i]);
+            acc[i] += kPesos * (double) pesos(my[i] & ~sensePes, opp[i] & ~sensePes);
+        }
+        for (int i = 0; i < n; i++) {
+            acc[i] += kXox * xox(my[i], opp[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            acc[i] += kPiramide * piramide(my[i], opp[i]);
+            valors[i] = (int) acc[i];
+        }
+    }
+
+    /**
+     * Heurística a partir dels acumuladors del tauler de cerca: fitxes,
+     * corners, frontera i suma de pesos ja estan calculats, i només queden
+     * la mobilitat, les vores i les piràmides.
+     * @param s el tauler de cerca.
+     * @param myType el jugador per qui avaluem.
+     * @return el mateix valor que evaluate(my, opp).
+     */
+    @Override
+    public int evaluate(SearchBoard s, CellType myType) {
+        int c = BitBoard.colorIndex(myType), o = 1 - c;
+        long my = s.getDiscs(myType), opp = s.getDiscs(CellType.opposite(myType));
+        long sensePes = piramides(my, opp);
+        int d = s.pesos[c] - s.pesos[o];
+        if (sensePes != 0) {
+            d -= pesos(my & sensePes, opp & sensePes);
+        }
+        return combina(s.fitxes[c], s.fitxes[o], s.corners[c], s.corners[o],
+                s.frontera[c], s.frontera[o], d, my, opp);
+    }
+
+    /**
+     * @return les caselles de les piràmides dels corners ocupats, que no
+     *         compten a la taula de pesos.
+     */
+    private static long piramides(long my, long opp) {
+        long sensePes = 0;
+        for (int c = 0; c < 4; c++) {
+            if (((my | opp) & (1L << CORNER_SQ[c])) != 0) {
+                sensePes |= PIRAMIDE[c];
+            }
+        }
+        return sensePes;
+    }
+
+    /**
+     * Acaba de calcular els termes que no són incrementals i fa el balanceig final.
+     */
+    private int combina(int myFitxes, int oppFitxes, int myCorners, int oppCorners,
+            int myFront, int oppFront, int pesos, long my, long opp) {
+        double pi = piramide(my, opp);
+
+        double xox = xox(my, opp);
+        double d = pesos;
+        double p = ratio(myFitxes, oppFitxes);
+        double f = -ratio(myFront, oppFront);
+        double c = 25 * (myCorners - oppCorners);
+        double m = ratio(mobilitat(my, opp), mobilitat(opp, my));
+
+        // balanceig final
+        return (int) (kParitat*p + kCorners*c + kMobilitat*m + kFrontera*f + kPesos*d + kXox*xox + kPiramide*pi);
+    }
+
+    /**
+     * Terme de les piràmides dels corners ocupats: fitxes del color del corner.
+     */
+    static double piramide(long my, long opp) {
+        int myTiles = 0, oppTiles = 0;
+        for (int k = 0; k < 4; k++) {
+            long corner = 1L << CORNER_SQ[k];
+            if ((my & corner) != 0) {
+                myTiles += Long.bitCount(my & PIRAMIDE[k]);
+            } else if ((opp & corner) != 0) {
+                oppTiles += Long.bitCount(opp & PIRAMIDE[k]);
+            }
+        }
+        return ratio(myTiles, oppTiles);
+    }
+
+    /**
+     * Percentatge amb signe de qui en té més, com fa cada terme de la heurística.
+     */
+    static double ratio(int my, int opp) {
+        if (my > opp) {
+            return (100.0 * my) / (my + opp);
+        } else if (my < opp) {
+            return -(100.0 * opp) / (my + opp);
+        }
+        return 0;
+    }
+
+    /**
+     * @return la suma de pesos de les fitxes de my menys la de les de opp.
+     */
+    static int pesos(long my, long opp) {
+        int d = 0;
+        for (int k = 0; k < PES_VALOR.length; k++) {
+            d += PES_VALOR[k] * (Long.bitCount(my & PES_MASCARA[k]) - Long.bitCount(opp & PES_MASCARA[k]));
+        }
+        return d;
+    }
+
+    /**
+     * @return quants parells fitxa-direcció tenen la casella veïna buida.
+     */
+    static int frontera(long discs, long empty) {
+        int n = 0;
+        for (int dir = 0; dir < 8; dir++) {
+            n += Long.bitCount(discs & BitBoard.shift(empty, dir));
+        }
+        return n;
+    }
+
+    /**
+     * Mobilitat comptada per direccions: una casella buida a la qual es pot
+     * arribar des de diverses direccions compta una vegada per cada una.
+     * @return la suma per direccions dels moviments de p contra o.
+     */
+    static int mobilitat(long p, long o) {
+        long empty = ~(p | o);
+        long oh = o & 0x7E7E7E7E7E7E7E7EL;
+        int n = 0;
+        long t;
+
+        t = oh & (p << 1); t |= oh & (t << 1); t |= oh & (t << 1);
+        t |= oh & (t << 1); t |= oh & (t << 1); t |= oh & (t << 1);
+        n += Long.bitCount(empty & (t << 1));
+
+        t = oh & (p >>> 1); t |= oh & (t >>> 1); t |= oh & (t >>> 1);
+        t |= oh & (t >>> 1); t |= oh & (t >>> 1); t |= oh & (t >>> 1);
+        n += Long.bitCount(empty & (t >>> 1));
+
+        t = o & (p << 8); t |= o & (t << 8); t |= o & (t << 8);
+        t |= o & (t << 8); t |= o & (t << 8); t |= o & (t << 8);
+        n += Long.bitCount(empty & (t << 8));
+
+        t = o & (p >>> 8); t |= o & (t >>> 8); t |= o & (t >>> 8);
+        t |= o & (t >>> 8); t |= o & (t >>> 8); t |= o & (t >>> 8);
+        n += Long.bitCount(empty & (t >>> 8));
+
+        t = oh & (p << 9); t |= oh & (t << 9); t |= oh & (t << 9);
+        t |= oh & (t << 9); t |= oh & (t << 9); t |= oh & (t << 9);
+        n += Long.bitCount(empty & (t << 9));
+
+        t = oh & (p << 7); t |= oh & (t << 7); t |= oh & (t << 7);
+        t |= oh & (t << 7); t |= oh & (t << 7); t |= oh & (t << 7);
+        n += Long.bitCount(empty & (t << 7));
+
+        t = oh & (p >>> 7); t |= oh & (t >>> 7); t |= oh & (t >>> 7);
+        t |= oh & (t >>> 7); t |= oh & (t >>> 7); t |= oh & (t >>> 7);
+        n += Long.bitCount(empty & (t >>> 7));
+
+        t = oh & (p >>> 9); t |= oh & (t >>> 9); t |= oh & (t >>> 9);
+        t |= oh & (t >>> 9); t |= oh & (t >>> 9); t |= oh & (t >>> 9);
+        n += Long.bitCount(empty & (t >>> 9));
+
+        return n;
+    }
+
+    /**
+     * @return l'índex en base 3 de la vora formada pels bytes my i opp.
+     */
+    static int edgeIndex(long my, long opp) {
+        return BASE3[(int) my & 0xFF] + 2 * BASE3[(int) opp & 0xFF];
+    }
+
+    /**
+     * Patrons X-O-X a les files y=0 / y=7 i a les columnes x=0 / x=7. Les
+     * columnes es tracten com les files del tauler transposat.
+     */
+    double xox(long my, long opp) {
+        int recompte = xoxVores(my, opp, SEGONA_DOBLE);
+        long myT = BitBoard.flipDiagonal(my), oppT = BitBoard.flipDiagonal(opp);
+        recompte += xoxVores(myT, oppT, columnesDobles ? SEGONA_DOBLE : SEGONA_SIMPLE);
+        return ratio(recompte & 0xFFFF, recompte >>> 16);
+    }
+
+    /**
+     * @return recompte "my" als 16 bits baixos i "opp" als alts.
+     */
+    private static int xoxVores(long my, long opp, byte[] segona) {
+        int first = FIRST[edgeIndex(my, opp)];
+        int codi = first & 0xF;
+        int s = segona[edgeIndex(my >>> 56, opp >>> 56) * CODIS + codi] & 0xFF;
+        int myX = (first >>> 4 & 0xF) + (s & 0xF);
+        int oppX = (first >>> 8 & 0xF) + (s >>> 4);
+        return myX | oppX << 16;
+    }
+}
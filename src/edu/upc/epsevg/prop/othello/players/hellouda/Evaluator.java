@@ -0,0 +1,43 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.CellType;
+
+/**
+ * Funció d'avaluació de les fulles de la cerca. Els valors són absoluts,
+ * des del punt de vista de myType, i han de quedar per sota dels valors de
+ * partida acabada dels jugadors. Les implementacions es comparteixen entre
+ * fils, així que evaluate no pot modificar cap estat.
+ * @author Arnau Roca y Henok Argudo
+ */
+public interface Evaluator {
+
+    /**
+     * @param s el tauler de cerca.
+     * @param myType el jugador per qui avaluem.
+     * @return un valor numèric que representa la heurística del tauler.
+     */
+    int evaluate(SearchBoard s, CellType myType);
+
+    /**
+     * @param my fitxes del jugador per qui avaluem.
+     * @param opp fitxes del seu contrincant.
+     * @return el mateix valor que evaluate(SearchBoard, CellType) per a
+     * aquesta posició.
+     */
+    int evaluate(long my, long opp);
+
+    /**
+     * Avalua un bloc de posicions, per exemple tots els fills d'un node a
+     * profunditat 1. Per defecte les avalua una a una; les implementacions
+     * el poden refer per fer cada terme per a tot el bloc alhora.
+     * @param my fitxes del jugador per qui avaluem, una per posició.
+     * @param opp fitxes del seu contrincant.
+     * @param n nombre de posicions.
+     * @param valors on es deixa el valor de cada posició.
+     */
+    default void evaluate(long[] my, long[] opp, int n, int[] valors) {
+        for (int i = 0; i < n; i++) {
+            valors[i] = evaluate(my[i], opp[i]);
+        }
+    }
+}
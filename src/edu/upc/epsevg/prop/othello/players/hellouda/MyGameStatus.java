@@ -1,28 +1,58 @@
-/*
- * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
- * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
- */
-package edu.upc.epsevg.prop.othello.players.hellouda;
-
-import edu.upc.epsevg.prop.othello.GameStatus;
-import java.util.BitSet;
-
-/**
- *
- * @author HENOK
- */
-public class MyGameStatus extends GameStatus{
-
-    public MyGameStatus(GameStatus gs) {
-        super(gs);
-    }
-
-    public BitSet getBoard_occupied() {
-        return board_occupied;
-    }
-
-    public BitSet getBoard_color() {
-        return board_color;
-    }
-    
-}
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.CellType;
+import edu.upc.epsevg.prop.othello.GameStatus;
+import java.util.BitSet;
+
+/**
+ *
+ * @author HENOK
+ */
+public class MyGameStatus extends GameStatus{
+
+    public MyGameStatus(GameStatus gs) {
+        super(gs);
+    }
+
+    /**
+     * Estat amb unes fitxes qualssevol. L'ordre dels bits de GameStatus i
+     * quin color és el bit 1 es treuen de la posició inicial, com fa
+     * BitBoard.fromStatus.
+     * @param player1 fitxes de PLAYER1, amb la casella y*8 + x.
+     * @param player2 fitxes de PLAYER2.
+     * @param torn jugador que mou.
+     */
+    public MyGameStatus(long player1, long player2, CellType torn) {
+        super();
+        //  (3,3) és al mateix bit en els dos ordres i ens dona el color del
+        //  bit 1; (4,3) i (3,4) són de colors diferents i ens donen l'ordre
+        CellType colorUn = board_color.get(BitBoard.toIndex(3, 3))
+                ? getPos(3, 3) : CellType.opposite(getPos(3, 3));
+        boolean transposat = board_color.get(BitBoard.toIndex(4, 3)) != (getPos(4, 3) == colorUn);
+        board_occupied.clear();
+        board_color.clear();
+        for (long b = player1 | player2; b != 0; b &= b - 1) {
+            int sq = Long.numberOfTrailingZeros(b);
+            int bit = transposat ? (sq & 7) * 8 + (sq >>> 3) : sq;
+            CellType tipus = ((player1 >>> sq) & 1) != 0 ? CellType.PLAYER1 : CellType.PLAYER2;
+            board_occupied.set(bit);
+            board_color.set(bit, tipus == colorUn);
+        }
+        if (getCurrentPlayer() != torn) {
+            movePiece(null);
+        }
+    }
+
+    public BitSet getBoard_occupied() {
+        return board_occupied;
+    }
+
+    public BitSet getBoard_color() {
+        return board_color;
+    }
+    
+}
@@ -0,0 +1,198 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.GameStatus;
+import edu.upc.epsevg.prop.othello.Move;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Llibre d'obertures. Cada posició es guarda una sola vegada amb la seva
+ * forma canònica: de les 8 simetries del tauler, la que dona el parell
+ * (fitxes del jugador que mou, fitxes del contrincant) més petit. El
+ * moviment es guarda en les coordenades de la forma canònica i en consultar
+ * es desfà la simetria.
+ *
+ * El fitxer està ordenat per clau i es projecta a memòria; una consulta és
+ * una cerca binària sobre el MappedByteBuffer, sense carregar res al heap.
+ *
+ * Format del fitxer (big-endian):
+ *   int  MAGIC
+ *   int  VERSIO
+ *   int  nombre d'entrades
+ *   per cada entrada, ordenades per (p, o) sense signe:
+ *     long p, long o, int casella, int valoració
+ * @author Arnau Roca y Henok Argudo
+ */
+public class OpeningBook {
+    public static final int MAGIC = 0x4F54424B;
+    public static final int VERSIO = 1;
+    static final int CAPCALERA = 3 * Integer.BYTES;
+    static final int REGISTRE = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+    private final ByteBuffer entrades;
+    private final int mida;
+
+    private OpeningBook(ByteBuffer entrades, int mida) {
+        this.entrades = entrades;
+        this.mida = mida;
+    }
+
+    /**
+     * Projecta a memòria un fitxer de llibre.
+     * @param fitxer el fitxer del llibre.
+     * @return el llibre.
+     * @throws IOException si no es pot llegir o el format no és correcte.
+     */
+    public static OpeningBook load(Path fitxer) throws IOException {
+        try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.READ)) {
+            long bytes = canal.size();
+            if (bytes < CAPCALERA) {
+                throw new IOException("Fitxer de llibre massa curt: " + fitxer);
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+            if (mapa.getInt(0) != MAGIC || mapa.getInt(4) != VERSIO) {
+                throw new IOException("Format de llibre desconegut: " + fitxer);
+            }
+            int mida = mapa.getInt(8);
+            if (mida < 0 || bytes != CAPCALERA + (long) mida * REGISTRE) {
+                throw new IOException("Mida de llibre incorrecta: " + fitxer);
+            }
+            return new OpeningBook(mapa.position(CAPCALERA).slice(), mida);
+        }
+    }
+
+    public int size() {
+        return mida;
+    }
+
+    /**
+     * Busca la posició al llibre.
+     * @param p fitxes del jugador que mou.
+     * @param o fitxes del contrincant.
+     * @return la casella a jugar en l'orientació de (p, o), o -1 si no hi és.
+     */
+    public int lookup(long p, long o) {
+        int sim = BitBoard.canonicalSymmetry(p, o);
+        long cp = BitBoard.symmetry(p, sim), co = BitBoard.symmetry(o, sim);
+        int lo = 0, hi = mida - 1;
+        while (lo <= hi) {
+            int mig = (lo + hi) >>> 1;
+            int base = mig * REGISTRE;
+            int cmp = Long.compareUnsigned(entrades.getLong(base), cp);
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(entrades.getLong(base + Long.BYTES), co);
+            }
+            if (cmp < 0) {
+                lo = mig + 1;
+            } else if (cmp > 0) {
+                hi = mig - 1;
+            } else {
+                int sq = entrades.getInt(base + 2 * Long.BYTES);
+                return BitBoard.symmetrySquare(sq, BitBoard.inverseSymmetry(sim));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Construeix un fitxer de llibre a partir de posicions en qualsevol
+     * orientació; les repetides (també per simetria) es queden amb l'última.
+     */
+    public static class Builder {
+        private final TreeMap<long[], int[]> posicions = new TreeMap<>((a, b) -> {
+            int cmp = Long.compareUnsigned(a[0], b[0]);
+            return cmp != 0 ? cmp : Long.compareUnsigned(a[1], b[1]);
+        });
+
+        /**
+         * @param p fitxes del jugador que mou.
+         * @param o fitxes del contrincant.
+         * @param sq casella a jugar.
+         * @param valoracio valoració de la posició per al jugador que mou.
+         */
+        public void add(long p, long o, int sq, int valoracio) {
+            int sim = BitBoard.canonicalSymmetry(p, o);
+            long[] clau = {BitBoard.symmetry(p, sim), BitBoard.symmetry(o, sim)};
+            posicions.put(clau, new int[]{BitBoard.symmetrySquare(sq, sim), valoracio});
+        }
+
+        public int size() {
+            return posicions.size();
+        }
+
+        /**
+         * Escriu les posicions ordenades al fitxer.
+         * @param fitxer el fitxer a escriure.
+         * @throws IOException si no es pot escriure.
+         */
+        public void save(Path fitxer) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(CAPCALERA + posicions.size() * REGISTRE);
+            buf.putInt(MAGIC).putInt(VERSIO).putInt(posicions.size());
+            posicions.forEach((clau, valor) -> {
+                buf.putLong(clau[0]).putLong(clau[1]).putInt(valor[0]).putInt(valor[1]);
+            });
+            buf.flip();
+            try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buf.hasRemaining()) {
+                    canal.write(buf);
+                }
+            }
+        }
+    }
+
+    /**
+     * Genera un llibre: totes les posicions diferents (llevat de simetries)
+     * fins a un nombre de jugades, cadascuna cercada amb PlayerID durant un
+     * temps fix.
+     *
+     * Ús: OpeningBook fitxer jugades ms
+     */
+    public static void main(String[] args) throws IOException {
+        Path fitxer = Path.of(args[0]);
+        int jugades = Integer.parseInt(args[1]);
+        long ms = Long.parseLong(args[2]);
+
+        List<GameStatus> nivell = new ArrayList<>();
+        nivell.add(new GameStatus());
+        Set<List<Long>> vistes = new HashSet<>();
+        Builder llibre = new Builder();
+        PlayerID jugador = new PlayerID();
+        //  el jugador s'atura sol; no depèn d'un timeout() que podria
+        //  arribar abans que la cerca comenci
+        jugador.setTimeBudget(ms);
+        for (int j = 0; j < jugades; j++) {
+            List<GameStatus> seguent = new ArrayList<>();
+            for (GameStatus s : nivell) {
+                BitBoard b = BitBoard.fromStatus(new MyGameStatus(s));
+                int sim = BitBoard.canonicalSymmetry(b.getPlayer(), b.getOpponent());
+                long p = BitBoard.symmetry(b.getPlayer(), sim), o = BitBoard.symmetry(b.getOpponent(), sim);
+                if (b.getMoves() == 0 || !vistes.add(List.of(p, o))) {
+                    continue;
+                }
+                Move m = jugador.move(new GameStatus(s));
+                //  el valor de la cerca és per al jugador que mou, com el del llibre
+                llibre.add(b.getPlayer(), b.getOpponent(), BitBoard.toIndex(m.getTo()),
+                        jugador.getStats().getValor());
+
+                for (long moves = b.getMoves(); moves != 0; moves &= moves - 1) {
+                    GameStatus fill = new GameStatus(s);
+                    fill.movePiece(BitBoard.toPoint(Long.numberOfTrailingZeros(moves)));
+                    seguent.add(fill);
+                }
+            }
+            nivell = seguent;
+            System.out.println("jugada " + (j + 1) + ": " + llibre.size() + " posicions");
+        }
+        llibre.save(fitxer);
+    }
+}
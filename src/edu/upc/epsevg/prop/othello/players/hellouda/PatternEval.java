@@ -0,0 +1,311 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.CellType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Avaluació per patrons: el tauler es talla en línies i regions (vores amb
+ * les dues X, corners 3x3, corners 2x5, files/columnes interiors i
+ * diagonals) i cada configuració d'un patró té un pes propi, diferent per
+ * cada fase de la partida. L'índex d'una configuració és el nombre en base 3
+ * de les seves caselles (0 buida, 1 nostra, 2 del contrincant) i totes les
+ * instàncies simètriques d'un patró comparteixen la mateixa taula.
+ *
+ * Els pesos es llegeixen d'un fitxer projectat a memòria amb FileChannel.map:
+ * no es copia res al heap, l'arrencada és immediata encara que el fitxer
+ * faci centenars de MB i diverses JVM amb el mateix fitxer comparteixen la
+ * cache de pàgines del sistema.
+ *
+ * Format del fitxer (big-endian):
+ *   int   MAGIC
+ *   int   VERSIO
+ *   int   nombre de fases
+ *   short pesos, fase per fase i dins de cada fase patró per patró en
+ *         l'ordre de PATRONS, 3^n pesos per un patró de n caselles
+ * @author Arnau Roca y Henok Argudo
+ */
+public class PatternEval implements Evaluator {
+    public static final int MAGIC = 0x4F545057;
+    public static final int VERSIO = 1;
+    static final int CAPCALERA = 3 * Integer.BYTES;
+    //  el valor es limita per no arribar mai al d'una partida acabada
+    static final int MAX_VALOR = 999_999;
+    //  unitats del fitxer per cada punt de la taula de pesos d'Evaluation
+    static final int ESCALA_POSICIONAL = 100;
+
+    //  patrons base en coordenades (x, y); la resta d'instàncies són les
+    //  seves imatges per les 8 simetries del tauler
+    static final int[][][] PATRONS = {
+        //  vora + 2X
+        {{0,0},{1,0},{2,0},{3,0},{4,0},{5,0},{6,0},{7,0},{1,1},{6,1}},
+        //  corner 3x3
+        {{0,0},{1,0},{2,0},{0,1},{1,1},{2,1},{0,2},{1,2},{2,2}},
+        //  corner 2x5
+        {{0,0},{1,0},{2,0},{3,0},{4,0},{0,1},{1,1},{2,1},{3,1},{4,1}},
+        //  files interiors
+        {{0,1},{1,1},{2,1},{3,1},{4,1},{5,1},{6,1},{7,1}},
+        {{0,2},{1,2},{2,2},{3,2},{4,2},{5,2},{6,2},{7,2}},
+        {{0,3},{1,3},{2,3},{3,3},{4,3},{5,3},{6,3},{7,3}},
+        //  diagonals de 8 a 4 caselles
+        {{0,0},{1,1},{2,2},{3,3},{4,4},{5,5},{6,6},{7,7}},
+        {{0,1},{1,2},{2,3},{3,4},{4,5},{5,6},{6,7}},
+        {{0,2},{1,3},{2,4},{3,5},{4,6},{5,7}},
+        {{0,3},{1,4},{2,5},{3,6},{4,7}},
+        {{0,4},{1,5},{2,6},{3,7}},
+    };
+
+    //  posició de la taula de cada patró dins d'una fase i pesos per fase
+    static final int[] OFFSET = new int[PATRONS.length];
+    static final int PESOS_PER_FASE;
+    //  instàncies: caselles de cada una seguides, on comença i de quin patró és
+    static final int[] CASELLES;
+    static final int[] INICI;
+    static final int[] TIPUS;
+    //  per cada casella, a quines instàncies pertany i amb quina potència de 3
+    static final int[] PER_CASELLA_INICI = new int[65];
+    static final int[] PER_CASELLA_INSTANCIA;
+    static final int[] PER_CASELLA_POTENCIA;
+
+    static {
+        int total = 0;
+        for (int p = 0; p < PATRONS.length; p++) {
+            OFFSET[p] = total;
+            total += pow3(PATRONS[p].length);
+        }
+        PESOS_PER_FASE = total;
+
+        List<int[]> instancies = new ArrayList<>();
+        List<Integer> tipus = new ArrayList<>();
+        for (int p = 0; p < PATRONS.length; p++) {
+            List<Long> vistes = new ArrayList<>();
+            for (int sim = 0; sim < 8; sim++) {
+                int[] sqs = new int[PATRONS[p].length];
+                long mascara = 0;
+                for (int k = 0; k < sqs.length; k++) {
+                    sqs[k] = simetria(sim, PATRONS[p][k][0], PATRONS[p][k][1]);
+                    mascara |= 1L << sqs[k];
+                }
+                //  una simetria que deixa les mateixes caselles no és una instància nova
+                if (!vistes.contains(mascara)) {
+                    vistes.add(mascara);
+                    instancies.add(sqs);
+                    tipus.add(p);
+                }
+            }
+        }
+        INICI = new int[instancies.size() + 1];
+        TIPUS = new int[instancies.size()];
+        for (int i = 0; i < instancies.size(); i++) {
+            INICI[i + 1] = INICI[i] + instancies.get(i).length;
+            TIPUS[i] = tipus.get(i);
+        }
+        CASELLES = new int[INICI[instancies.size()]];
+        for (int i = 0; i < instancies.size(); i++) {
+            System.arraycopy(instancies.get(i), 0, CASELLES, INICI[i], instancies.get(i).length);
+        }
+
+        //  la primera casella d'una instància és la xifra de més pes
+        PER_CASELLA_INSTANCIA = new int[CASELLES.length];
+        PER_CASELLA_POTENCIA = new int[CASELLES.length];
+        int n = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            PER_CASELLA_INICI[sq] = n;
+            for (int i = 0; i < TIPUS.length; i++) {
+                for (int k = INICI[i]; k < INICI[i + 1]; k++) {
+                    if (CASELLES[k] == sq) {
+                        PER_CASELLA_INSTANCIA[n] = i;
+                        PER_CASELLA_POTENCIA[n++] = pow3(INICI[i + 1] - 1 - k);
+                    }
+                }
+            }
+        }
+        PER_CASELLA_INICI[64] = n;
+    }
+
+    private static int pow3(int n) {
+        int r = 1;
+        for (int k = 0; k < n; k++) {
+            r *= 3;
+        }
+        return r;
+    }
+
+    /**
+     * @return la casella de (x, y) transformada per la simetria sim (0..7).
+     */
+    private static int simetria(int sim, int x, int y) {
+        if ((sim & 4) != 0) {
+            int t = x;
+            x = y;
+            y = t;
+        }
+        if ((sim & 1) != 0) {
+            x = 7 - x;
+        }
+        if ((sim & 2) != 0) {
+            y = 7 - y;
+        }
+        return BitBoard.toIndex(x, y);
+    }
+
+    private final ShortBuffer pesos;
+    private final int numFases;
+    //  índexs de les instàncies; l'avaluador el comparteixen els fils de
+    //  cerca, així que cada fil té el seu
+    private final ThreadLocal<int[]> indexos = ThreadLocal.withInitial(() -> new int[TIPUS.length]);
+
+    private PatternEval(ShortBuffer pesos, int numFases) {
+        this.pesos = pesos;
+        this.numFases = numFases;
+    }
+
+    /**
+     * Projecta a memòria un fitxer de pesos.
+     * @param fitxer el fitxer de pesos.
+     * @return l'avaluador que llegeix del fitxer.
+     * @throws IOException si no es pot llegir o el format no és correcte.
+     */
+    public static PatternEval load(Path fitxer) throws IOException {
+        try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.READ)) {
+            long mida = canal.size();
+            if (mida < CAPCALERA) {
+                throw new IOException("Fitxer de pesos massa curt: " + fitxer);
+            }
+            //  la projecció continua vàlida un cop tancat el canal
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, mida);
+            if (mapa.getInt(0) != MAGIC || mapa.getInt(4) != VERSIO) {
+                throw new IOException("Format de fitxer de pesos desconegut: " + fitxer);
+            }
+            int numFases = mapa.getInt(8);
+            if (numFases <= 0 || mida != CAPCALERA + 2L * numFases * PESOS_PER_FASE) {
+                throw new IOException("Mida de fitxer de pesos incorrecta: " + fitxer);
+            }
+            ShortBuffer pesos = mapa.position(CAPCALERA).slice().asShortBuffer();
+            return new PatternEval(pesos, numFases);
+        }
+    }
+
+    /**
+     * Escriu un fitxer de pesos en el format que llegeix load.
+     * @param fitxer el fitxer a escriure.
+     * @param numFases nombre de fases.
+     * @param pesos numFases * PESOS_PER_FASE pesos.
+     * @throws IOException si no es pot escriure.
+     */
+    public static void save(Path fitxer, int numFases, short[] pesos) throws IOException {
+        if (pesos.length != numFases * PESOS_PER_FASE) {
+            throw new IllegalArgumentException("Calen " + numFases * PESOS_PER_FASE + " pesos");
+        }
+        ByteBuffer buf = ByteBuffer.allocate(CAPCALERA + 2 * pesos.length);
+        buf.putInt(MAGIC).putInt(VERSIO).putInt(numFases);
+        buf.asShortBuffer().put(pesos);
+        buf.rewind();
+        try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                canal.write(buf);
+            }
+        }
+    }
+
+    public int getNumFases() {
+        return numFases;
+    }
+
+    /**
+     * @return la fase de la partida segons les fitxes que hi ha al tauler.
+     */
+    int fase(int fitxes) {
+        return Math.min(numFases - 1, Math.max(0, (fitxes - 4) * numFases / 60));
+    }
+
+    /**
+     * Suma dels pesos de totes les instàncies a la fase que toca. Els índexs
+     * es construeixen recorrent només les caselles ocupades: cada una suma
+     * la seva potència de 3 (una o dues vegades segons el color) a les
+     * instàncies on apareix.
+     * @param my fitxes del jugador per qui avaluem.
+     * @param opp fitxes del seu contrincant.
+     * @return la valoració des del punt de vista de my.
+     */
+    @Override
+    public int evaluate(long my, long opp) {
+        //  queda a zero en acabar cada avaluació
+        int[] idx = indexos.get();
+        for (long b = my; b != 0; b &= b - 1) {
+            int sq = Long.numberOfTrailingZeros(b);
+            for (int k = PER_CASELLA_INICI[sq]; k < PER_CASELLA_INICI[sq + 1]; k++) {
+                idx[PER_CASELLA_INSTANCIA[k]] += PER_CASELLA_POTENCIA[k];
+            }
+        }
+        for (long b = opp; b != 0; b &= b - 1) {
+            int sq = Long.numberOfTrailingZeros(b);
+            for (int k = PER_CASELLA_INICI[sq]; k < PER_CASELLA_INICI[sq + 1]; k++) {
+                idx[PER_CASELLA_INSTANCIA[k]] += 2 * PER_CASELLA_POTENCIA[k];
+            }
+        }
+        int base = fase(Long.bitCount(my | opp)) * PESOS_PER_FASE;
+        int valor = 0;
+        for (int i = 0; i < TIPUS.length; i++) {
+            valor += pesos.get(base + OFFSET[TIPUS[i]] + idx[i]);
+            idx[i] = 0;
+        }
+        return Math.max(-MAX_VALOR, Math.min(MAX_VALOR, valor));
+    }
+
+    @Override
+    public int evaluate(SearchBoard s, CellType myType) {
+        return evaluate(s.getDiscs(myType), s.getDiscs(CellType.opposite(myType)));
+    }
+
+    /**
+     * Pesos que reprodueixen la taula de pesos per casella d'Evaluation:
+     * cada configuració val la suma dels pesos de les seves fitxes (en
+     * positiu les nostres i en negatiu les del contrincant), i cada casella
+     * es reparteix entre totes les instàncies que la contenen. Serveixen de
+     * punt de partida i per provar l'avaluador sense un fitxer entrenat.
+     * @param numFases nombre de fases, totes amb els mateixos pesos.
+     * @return numFases * PESOS_PER_FASE pesos.
+     */
+    public static short[] pesosPosicionals(int numFases) {
+        short[] pesos = new short[numFases * PESOS_PER_FASE];
+        for (int p = 0; p < PATRONS.length; p++) {
+            int n = PATRONS[p].length;
+            double[] pes = new double[n];
+            for (int k = 0; k < n; k++) {
+                int sq = BitBoard.toIndex(PATRONS[p][k][0], PATRONS[p][k][1]);
+                pes[k] = ESCALA_POSICIONAL * Evaluation.PES[sq]
+                        / (double) (PER_CASELLA_INICI[sq + 1] - PER_CASELLA_INICI[sq]);
+            }
+            for (int idx = 0; idx < pow3(n); idx++) {
+                double valor = 0;
+                //  la primera casella és la xifra de més pes
+                for (int k = n - 1, resta = idx; k >= 0; k--, resta /= 3) {
+                    valor += resta % 3 == 1 ? pes[k] : resta % 3 == 2 ? -pes[k] : 0;
+                }
+                for (int f = 0; f < numFases; f++) {
+                    pesos[f * PESOS_PER_FASE + OFFSET[p] + idx] = (short) Math.round(valor);
+                }
+            }
+        }
+        return pesos;
+    }
+
+    /**
+     * Escriu un fitxer amb els pesos de pesosPosicionals.
+     *
+     * Ús: PatternEval fitxer [fases]
+     */
+    public static void main(String[] args) throws IOException {
+        int numFases = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        save(Path.of(args[0]), numFases, pesosPosicionals(numFases));
+    }
+}
@@ -0,0 +1,224 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.GameStatus;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToLongFunction;
+
+/**
+ * Perft: compta les fulles de l'arbre de moviments fins a una profunditat,
+ * per validar i cronometrar la generació de moviments sense la cerca.
+ * Un pas compta com una jugada i una partida acabada abans de la
+ * profunditat compta com una fulla, que és el conveni dels valors coneguts.
+ *
+ * Es pot fer amb BitBoard i amb GameStatus (la representació de la
+ * llibreria que fa servir MyGameStatus). Amb bulk, a l'últim nivell es
+ * compten els moviments en lloc de fer-los; amb més d'un fil, es reparteixen
+ * els fills de l'arrel.
+ *
+ * Ús: Perft profunditat [fils] [-gs] [-nobulk] [-partida=f5d6c3...]
+ *   -gs       també amb GameStatus, que és molt més lent
+ *   -nobulk   fa els moviments de l'últim nivell
+ *   -partida  posició de partida, per defecte la inicial
+ * @author Arnau Roca y Henok Argudo
+ */
+public class Perft {
+    //  valors coneguts des de la posició inicial, per profunditat
+    static final long[] CONEGUTS = {
+        1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L, 24571284L,
+        212258800L, 1939886636L, 18429641748L, 184042084512L
+    };
+
+    /**
+     * Perft sobre bitboards amb make/unmake.
+     * @param b el tauler, que queda com estava.
+     * @param depth profunditat.
+     * @param bulk si a l'últim nivell només es compten els moviments.
+     * @return les fulles.
+     */
+    static long perft(BitBoard b, int depth, boolean bulk) {
+        if (depth == 0) {
+            return 1;
+        }
+        long moves = b.getMoves();
+        if (moves == 0) {
+            if (b.getOpponentMoves() == 0) {
+                return 1;
+            }
+            b.pass();
+            long n = perft(b, depth - 1, bulk);
+            b.pass();
+            return n;
+        }
+        if (bulk && depth == 1) {
+            return Long.bitCount(moves);
+        }
+        long n = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            long flips = b.makeMove(sq);
+            n += perft(b, depth - 1, bulk);
+            b.unmakeMove(sq, flips);
+        }
+        return n;
+    }
+
+    /**
+     * Perft sobre GameStatus, copiant l'estat a cada moviment.
+     */
+    static long perft(GameStatus s, int depth, boolean bulk) {
+        if (depth == 0) {
+            return 1;
+        }
+        List<Point> moves = s.getMoves();
+        if (moves.isEmpty()) {
+            GameStatus fill = new GameStatus(s);
+            fill.movePiece(null);
+            if (fill.getMoves().isEmpty()) {
+                return 1;
+            }
+            return perft(fill, depth - 1, bulk);
+        }
+        if (bulk && depth == 1) {
+            return moves.size();
+        }
+        long n = 0;
+        for (Point p : moves) {
+            GameStatus fill = new GameStatus(s);
+            fill.movePiece(p);
+            n += perft(fill, depth - 1, bulk);
+        }
+        return n;
+    }
+
+    /**
+     * @return els fills de l'arrel com a BitBoard independents; si cal
+     * passar, l'únic fill és el pas.
+     */
+    static List<BitBoard> fills(BitBoard b) {
+        List<BitBoard> fills = new ArrayList<>();
+        long moves = b.getMoves();
+        if (moves == 0) {
+            BitBoard fill = new BitBoard(b);
+            fill.pass();
+            fills.add(fill);
+        }
+        for (; moves != 0; moves &= moves - 1) {
+            BitBoard fill = new BitBoard(b);
+            fill.makeMove(Long.numberOfTrailingZeros(moves));
+            fills.add(fill);
+        }
+        return fills;
+    }
+
+    /**
+     * @return els fills de l'arrel com a GameStatus independents.
+     */
+    static List<GameStatus> fills(GameStatus s) {
+        List<GameStatus> fills = new ArrayList<>();
+        List<Point> moves = s.getMoves();
+        if (moves.isEmpty()) {
+            GameStatus fill = new GameStatus(s);
+            fill.movePiece(null);
+            fills.add(fill);
+        }
+        for (Point p : moves) {
+            GameStatus fill = new GameStatus(s);
+            fill.movePiece(p);
+            fills.add(fill);
+        }
+        return fills;
+    }
+
+    /**
+     * Reparteix els fills de l'arrel entre els fils.
+     * @param fills els fills de l'arrel.
+     * @param perft el perft d'un fill a profunditat - 1.
+     * @return les fulles.
+     */
+    static <T> long enParallel(List<T> fills, ToLongFunction<T> perft, ExecutorService pool)
+            throws InterruptedException, ExecutionException {
+        List<Future<Long>> parcials = new ArrayList<>();
+        for (T fill : fills) {
+            parcials.add(pool.submit(() -> perft.applyAsLong(fill)));
+        }
+        long n = 0;
+        for (Future<Long> f : parcials) {
+            n += f.get();
+        }
+        return n;
+    }
+
+    /**
+     * Juga una partida des de la posició inicial; si el jugador que toca no
+     * pot moure, passa.
+     * @param partida les caselles jugades en notació columna-fila, per
+     * exemple "f5f4d3".
+     * @return l'estat de joc final.
+     */
+    public static GameStatus reprodueix(String partida) {
+        GameStatus s = new GameStatus();
+        for (int i = 0; i + 1 < partida.length(); i += 2) {
+            Point p = new Point(partida.charAt(i) - 'a', partida.charAt(i + 1) - '1');
+            if (s.getMoves().isEmpty()) {
+                s.movePiece(null);
+            }
+            if (!s.getMoves().contains(p)) {
+                throw new IllegalArgumentException("Moviment il·legal " + partida.substring(i, i + 2)
+                        + " a la partida " + partida);
+            }
+            s.movePiece(p);
+        }
+        return s;
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int profunditat = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int fils = args.length > 1 && !args[1].startsWith("-") ? Integer.parseInt(args[1]) : 1;
+        boolean gs = false, bulk = true;
+        String partida = "";
+        for (String arg : args) {
+            if (arg.equals("-gs")) {
+                gs = true;
+            } else if (arg.equals("-nobulk")) {
+                bulk = false;
+            } else if (arg.startsWith("-partida=")) {
+                partida = arg.substring("-partida=".length());
+            }
+        }
+        GameStatus s = reprodueix(partida);
+        BitBoard b = BitBoard.fromStatus(new MyGameStatus(s));
+        boolean inicial = partida.isEmpty();
+        ExecutorService pool = fils > 1 ? Executors.newFixedThreadPool(fils) : null;
+
+        System.out.printf("%-5s %-10s %16s %10s %14s  %s%n", "prof", "tauler", "nodes", "ms", "nodes/s", "");
+        for (int d = 1; d <= profunditat; d++) {
+            for (int r = 0; r < (gs ? 2 : 1); r++) {
+                final int prof = d;
+                final boolean ambBulk = bulk;
+                long t0 = System.nanoTime();
+                long nodes;
+                if (r == 0) {
+                    nodes = pool == null ? perft(b, prof, ambBulk)
+                            : enParallel(fills(b), f -> perft(f, prof - 1, ambBulk), pool);
+                } else {
+                    nodes = pool == null ? perft(s, prof, ambBulk)
+                            : enParallel(fills(s), f -> perft(f, prof - 1, ambBulk), pool);
+                }
+                long ns = Math.max(1, System.nanoTime() - t0);
+                String estat = !inicial || d >= CONEGUTS.length ? ""
+                        : nodes == CONEGUTS[d] ? "ok" : "ERROR, ha de ser " + CONEGUTS[d];
+                System.out.printf("%-5d %-10s %16d %10d %14d  %s%n", d, r == 0 ? "BitBoard" : "GameStatus",
+                        nodes, ns / 1_000_000, (long) (nodes * 1e9 / ns), estat);
+            }
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -8,65 +8,350 @@ import edu.upc.epsevg.prop.othello.IPlayer;
 import edu.upc.epsevg.prop.othello.Move;
 import edu.upc.epsevg.prop.othello.SearchType;
 import java.awt.Point;
-import java.util.Random;
-import java.util.ArrayList; 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Jugador MiniMax amb Iterative Deep Search (IDS)
  * @author Arnau Roca y Henok Argudo
  */
-public class PlayerID implements IPlayer, IAuto {
+public class PlayerID implements IPlayer, IAuto, AutoCloseable {
     private CellType myType;
     private CellType opponentType;
+    //  heurística del jugador, feta sobre bitboards
+    static final Evaluation AVALUACIO = new Evaluation(10, 900, 78, 74, 150, 260, 200, true);
+    //  avaluació de les fulles, AVALUACIO si no se'n dona cap altra
+    private final Evaluator avaluador;
     private int cntNodes;
     private int maxDepth;
-    private long[][][] zobrist;
-    private long N;
-    private InfoNode[] tTransp;
-    private boolean timeOut;
+    private TranspositionTable tTransp;
+    //  false si la taula és compartida i la generació l'avança qui la comparteix
+    private final boolean taulaPropia;
+    //  es barreja a les claus quan el jugador de l'arrel és PLAYER2, perquè
+    //  dues cerques amb arrels de colors diferents no comparteixin valors
+    private static final long CLAU_PLAYER2 = 0x6A09E667F3BCC909L;
+    private long salClau;
+    private volatile boolean timeOut;
+    //  timeOut només s'activa mentre hi ha una jugada en curs, i es
+    //  desactiva en acabar-la; rellotge fa atòmics els dos canvis
+    private final Object rellotge = new Object();
+    private boolean enJugada;
     private int profmax = 64;
+    //  propietat del sistema amb la mida de la taula en MB; si no hi és, la
+    //  mida depèn del heap (TranspositionTable.defaultSizeMB)
+    public static final String TT_MB_PROPIETAT = "hellouda.ttmb";
+    //  nombre de fils de cerca, 1 = sense Lazy SMP
+    private int numThreads;
+    private ExecutorService helpers;
+    private volatile boolean stopHelpers;
+    //  buits a partir dels quals el final es resol exactament
+    public static final int BUITS_FINALS = 18;
+    private int buitsFinals = BUITS_FINALS;
+    //  profunditat de l'IDS que es fa abans del solver, per tenir un moviment
+    //  si el WLD no s'acaba a temps
+    static final int PROF_RESERVA = 8;
+    //  per sota d'aquestes fitxes la taula de transposició fa servir la forma
+    //  canònica de la posició (una per cada 8 simetries) i a l'arrel no es
+    //  proven moviments simètrics entre ells
+    public static final int FITXES_SIMETRIA = 20;
+    private int fitxesSimetria = FITXES_SIMETRIA;
+    //  els nodes a profunditat 1 avaluen tots els fills en un sol bloc
+    private boolean avaluacioEnBloc = false;
+    //  a partir d'aquesta profunditat, abans d'expandir cap fill es busquen
+    //  tots a la taula per si algun ja refuta la finestra (ETC)
+    public static final int PROF_ETC = 6;
+    private int profETC = PROF_ETC;
+    //  paràmetres de Multi-ProbCut, null per no tallar
+    private ProbCut probCut;
+    private double llindarProbCut = ProbCut.LLINDAR;
+    private EndgameSolver solver;
+    //  llibre d'obertures, null si no se'n fa servir cap
+    private OpeningBook llibre;
+    /**
+     * Algorisme de cada iteració de l'IDS.
+     */
+    public enum Algorisme {
+        //  alpha-beta amb tota la finestra a tots els fills
+        ALPHABETA,
+        //  Principal Variation Search amb finestres d'aspiració
+        PVS,
+        //  MTD(f), només amb cerques de finestra nul·la
+        MTDF
+    }
+    private Algorisme algorisme = Algorisme.PVS;
+    //  mitja amplada inicial de la finestra d'aspiració
+    static final int FINESTRA_ASPIRACIO = 2000;
+    //  pressupost per jugada o temps de rellotge restant en ms, 0 si no se'n sap
+    private long pressupostMs;
+    private long rellotgeMs;
+    private TimeManager temps;
+    //  pondering: el fil, la cerca que hi corre i el seu resultat pendent
+    private boolean pondering;
+    private ExecutorService ponderExecutor;
+    private SearchWorker ponderWorker;
+    private Future<SearchStats> ponderFuture;
+    private volatile boolean stopPonder;
+    //  estadístiques de l'última jugada
+    private SearchStats stats = new SearchStats();
 
     /**
      * Constructor PlayerID, inicialitzem atributs
-     * i generem la zobrist amb numeros aleatoris.
+     * i la taula de transposició, de la mida que digui la propietat
+     * hellouda.ttmb o, si no hi és, d'una quarta part del heap.
      */
     public PlayerID() {
+        this(Integer.getInteger(TT_MB_PROPIETAT, TranspositionTable.defaultSizeMB()));
+    }
+
+    /**
+     * Constructor PlayerID amb una mida de taula de transposició concreta.
+     * @param ttMB mida màxima de la taula de transposició en MB.
+     */
+    public PlayerID(int ttMB) {
+        this(ttMB, 1);
+    }
+
+    /**
+     * Constructor PlayerID amb Lazy SMP: a més del fil principal, numThreads-1
+     * fils ajudants cerquen la mateixa arrel compartint la taula de transposició.
+     * @param ttMB mida màxima de la taula de transposició en MB.
+     * @param numThreads nombre total de fils de cerca.
+     */
+    public PlayerID(int ttMB, int numThreads) {
+        this(ttMB, numThreads, AVALUACIO);
+    }
+
+    /**
+     * Constructor PlayerID amb una funció d'avaluació concreta, per exemple
+     * un PatternEval.
+     * @param ttMB mida màxima de la taula de transposició en MB.
+     * @param numThreads nombre total de fils de cerca.
+     * @param avaluador avaluació de les fulles.
+     */
+    public PlayerID(int ttMB, int numThreads, Evaluator avaluador) {
+        this(new TranspositionTable(ttMB), numThreads, avaluador, true);
+    }
+
+    /**
+     * Constructor PlayerID sobre una taula de transposició que ja existeix,
+     * per exemple la d'un altre jugador; la taula admet diverses cerques
+     * alhora, com fa amb els fils de Lazy SMP. Els valors de la taula són
+     * des del punt de vista del jugador de l'arrel, i per això el color
+     * d'aquest jugador forma part de la clau. El jugador no avança la
+     * generació de la taula: ho ha de fer qui la comparteix, amb
+     * TranspositionTable.newSearch.
+     * @param taula la taula de transposició.
+     * @param numThreads nombre total de fils de cerca.
+     * @param avaluador avaluació de les fulles.
+     */
+    public PlayerID(TranspositionTable taula, int numThreads, Evaluator avaluador) {
+        this(taula, numThreads, avaluador, false);
+    }
+
+    private PlayerID(TranspositionTable taula, int numThreads, Evaluator avaluador, boolean taulaPropia) {
         cntNodes = 0;
         maxDepth = 0;
         timeOut = false;
+        this.numThreads = Math.max(1, numThreads);
+        this.avaluador = avaluador;
         
-        zobrist = new long[8][8][2];
-        N = 59652323; //2 gb = 119304599 -- 1 gb = 59652323
-        tTransp = new InfoNode[(int)N];
-        // Creem un objecte Random
-        Random random = new Random(N);
-        // Inicialitzem la matriu amb valors aleatoris
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                for (int k = 0; k < 2; k++) {
-                    zobrist[i][j][k] = random.nextLong();
-                }
-            }
+        tTransp = taula;
+        this.taulaPropia = taulaPropia;
+    }
+
+    /**
+     * Canvia el nombre de fitxes per sota del qual les posicions simètriques
+     * comparteixen entrada a la taula de transposició.
+     * @param fitxes nombre de fitxes, 0 per no fer-ho mai.
+     */
+    public void setSymmetryDiscs(int fitxes) {
+        this.fitxesSimetria = fitxes;
+    }
+
+    /**
+     * Canvia la profunditat mínima de l'Enhanced Transposition Cutoff.
+     * @param prof profunditat, 0 per no fer-lo mai.
+     */
+    public void setETCDepth(int prof) {
+        this.profETC = prof;
+    }
+
+    /**
+     * Activa Multi-ProbCut amb uns paràmetres ajustats amb ProbCut.main.
+     * @param probCut els paràmetres, o null per cercar-ho tot a profunditat
+     * completa.
+     */
+    public void setProbCut(ProbCut probCut) {
+        this.probCut = probCut;
+    }
+
+    /**
+     * Canvia el marge de Multi-ProbCut: com més gran, menys talls i menys
+     * errors.
+     * @param llindar nombre de desviacions típiques, per defecte ProbCut.LLINDAR.
+     */
+    public void setProbCutThreshold(double llindar) {
+        this.llindarProbCut = llindar;
+    }
+
+    /**
+     * Fa que els nodes a profunditat 1 avaluïn tots els fills amb una sola
+     * crida a Evaluator.evaluate(long[], long[], int, int[]) en lloc de fer
+     * i desfer cada moviment.
+     * @param enBloc true per avaluar en bloc.
+     */
+    public void setBatchEval(boolean enBloc) {
+        this.avaluacioEnBloc = enBloc;
+    }
+
+    /**
+     * Canvia el nombre de caselles buides a partir del qual deixem l'IDS i
+     * resolem el final de partida.
+     * @param buits nombre de buits, 0 per no fer servir mai el solver.
+     */
+    public void setEndgameEmpties(int buits) {
+        buitsFinals = buits;
+    }
+
+    /**
+     * Tria l'algorisme de cerca de cada iteració.
+     * @param algorisme ALPHABETA, PVS (per defecte) o MTDF.
+     */
+    public void setAlgorisme(Algorisme algorisme) {
+        this.algorisme = algorisme;
+    }
+
+    /**
+     * Limita la profunditat de l'IDS; sense timeout, move cerca exactament
+     * fins a profmax-1.
+     * @param profmax primera profunditat que ja no es cerca.
+     */
+    public void setProfMax(int profmax) {
+        this.profmax = profmax;
+    }
+
+    /**
+     * Fixa el temps de cada jugada; move deixa de començar iteracions quan
+     * preveu que no les podrà acabar i s'atura sola al límit, sense esperar
+     * timeout().
+     * @param ms temps per jugada en ms, 0 per dependre només de timeout().
+     */
+    public void setTimeBudget(long ms) {
+        pressupostMs = ms;
+    }
+
+    /**
+     * Com setTimeBudget, però a partir del temps de rellotge que queda a
+     * tota la partida; s'ha d'actualitzar abans de cada jugada.
+     * @param ms temps de rellotge restant en ms, 0 per no fer-lo servir.
+     */
+    public void setRemainingTime(long ms) {
+        rellotgeMs = ms;
+    }
+
+    /**
+     * @return el gestor de temps de la jugada o null si no tenim pressupost.
+     */
+    private TimeManager creaTimeManager(int buits) {
+        if (pressupostMs > 0) {
+            return new TimeManager(pressupostMs);
+        } else if (rellotgeMs > 0) {
+            return TimeManager.perRellotge(rellotgeMs, buits);
         }
+        return null;
     }
-    
+
     /**
-     * Funció que retorna el hash únic de un estat de joc.
-     * @param s el joc actual.
-     * @return un long que representa el hash de l'estat actual de joc.
-     */
-    public long getHash(GameStatus s){
-        long hash  = 0;
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if(s.getPos(i, j) != CellType.EMPTY){
-                    for (int k = 0; k < 2; k++) {
-                        hash ^= zobrist[i][j][k];
-                    }
+     * Condició d'aturada del solver de finals.
+     */
+    private boolean aturaFinal() {
+        if (temps != null && temps.superatHard()) {
+            timeOut = true;
+        }
+        return timeOut;
+    }
+
+    /**
+     * Fa que move consulti el llibre abans de cercar.
+     * @param llibre el llibre d'obertures, o null per no fer-ne servir cap.
+     */
+    public void setOpeningBook(OpeningBook llibre) {
+        this.llibre = llibre;
+    }
+
+    /**
+     * @return nodes de l'última jugada (fil principal) on hi ha hagut tall.
+     */
+    public long getCutoffs() {
+        return stats.getTalls();
+    }
+
+    /**
+     * @return dels nodes amb tall, quants han tallat amb el primer moviment.
+     */
+    public long getFirstMoveCutoffs() {
+        return stats.tallsPerIndex[0];
+    }
+
+    /**
+     * Variant principal a partir d'una posició, seguint el millor moviment
+     * que la taula de transposició té guardat per a cada posició. S'atura
+     * quan la taula no té la posició, quan la partida s'acaba o quan n'hi
+     * ha prou; els passos queden com a null.
+     * @param s l'estat de joc on comença la variant.
+     * @param max nombre màxim de jugades.
+     * @return les caselles de la variant.
+     */
+    public List<Point> getPV(GameStatus s, int max) {
+        BitBoard b = BitBoard.fromStatus(new MyGameStatus(s));
+        List<Point> pv = new ArrayList<>();
+        while (pv.size() < max) {
+            long moves = b.getMoves();
+            if (moves == 0) {
+                if (b.getOpponentMoves() == 0) {
+                    break;
                 }
+                b.pass();
+                pv.add(null);
+                continue;
             }
+            int sim = simetria(b);
+            long dada = tTransp.probe(clau(b, sim));
+            if (dada == TranspositionTable.MISS) {
+                break;
+            }
+            int sq = casellaSimetrica(TranspositionTable.move(dada), BitBoard.inverseSymmetry(sim));
+            if (sq < 0 || ((moves >>> sq) & 1) == 0) {
+                break;
+            }
+            pv.add(BitBoard.toPoint(sq));
+            b.makeMove(sq);
+        }
+        //  un pas al final no aporta res
+        while (!pv.isEmpty() && pv.get(pv.size() - 1) == null) {
+            pv.remove(pv.size() - 1);
         }
-        return Math.abs(hash);
+        return pv;
+    }
+
+    /**
+     * @return les estadístiques de la cerca de l'última jugada.
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return els bytes que ocupa la taula de transposició; com que es
+     * reserva a mesura que s'omple, pot ser menys que la mida demanada.
+     */
+    public long getTTBytesUsed() {
+        return tTransp.getBytesUsed();
     }
     
     /**
@@ -89,557 +374,1139 @@ public class PlayerID implements IPlayer, IAuto {
 
     /**
      * Ens avisa que hem de parar la cerca en curs perquè s'ha exhaurit el temps
-     * de joc.
+     * de joc. Es té en compte encara que arribi abans que la cerca comenci,
+     * però no si arriba quan move ja ha retornat.
      */
     @Override
     public void timeout() {
         //System.out.println("TIME OUT -> tallem la cerca ");
-        timeOut = true;
+        synchronized (rellotge) {
+            if (enJugada) {
+                timeOut = true;
+            }
+        }
     }
     
     /**
-     * Utilitzant IDS obté el millor moviment donat un estat de joc.
+     * Utilitzant IDS obté el millor moviment donat un estat de joc. En
+     * acabar deixa les estadístiques a getStats() i les envia a JFR.
      * @param s l'estat de joc actual.
      * @return el moviment que fa el jugador.
      */
     @Override
     public Move move(GameStatus s) {
+        synchronized (rellotge) {
+            enJugada = true;
+        }
+        SearchMoveEvent event = new SearchMoveEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        stats = new SearchStats();
+        Move m;
+        try {
+            m = jugada(s);
+        } finally {
+            synchronized (rellotge) {
+                enJugada = false;
+                timeOut = false;
+            }
+        }
+        stats.profunditat = m.getMaxDepthReached();
+        stats.ms = (System.nanoTime() - t0) / 1_000_000;
+        stats.ttOcupacio = tTransp.getFillRate();
+        stats.ttObsoletes = tTransp.getStaleRate();
+        event.commit(getName(), stats);
+        return m;
+    }
+
+    private Move jugada(GameStatus s) {
         cntNodes = 0;
         maxDepth = 0;
-        timeOut = false;
-        
+        if (taulaPropia) {
+            tTransp.newSearch();
+        }
+
         MyGameStatus myGameStatus = new MyGameStatus(s);
         myType = myGameStatus.getCurrentPlayer();
         opponentType = CellType.opposite(myType);
-        
-        MyPair millorMov = new MyPair(new Point(), Integer.MIN_VALUE);
-        int profIDS=1;
-        while(!timeOut && profIDS<profmax){
-            MyPair mov = triaPosició(myGameStatus, profIDS);
-            if(mov.heuristica > millorMov.heuristica){
-                millorMov=mov;
+        salClau = myType == CellType.PLAYER2 ? CLAU_PLAYER2 : 0;
+        SearchBoard tauler = new SearchBoard(BitBoard.fromStatus(myGameStatus));
+        stats.buits = tauler.getEmptyCount();
+        temps = creaTimeManager(tauler.getEmptyCount());
+        //  si hem encertat la resposta del contrincant, la cerca de
+        //  pondering continua com a cerca principal
+        SearchWorker principal = recullPonder(tauler);
+        if(llibre != null){
+            int sq = llibre.lookup(tauler.getPlayer(), tauler.getOpponent());
+            if(sq >= 0 && ((tauler.getMoves() >>> sq) & 1) != 0){
+                stopPondering();
+                stats.origen = "llibre";
+                return new Move(BitBoard.toPoint(sq), 0, 0, SearchType.MINIMAX_IDS);
             }
-            profIDS++;
         }
-        return new Move(millorMov.position, cntNodes, profIDS, SearchType.MINIMAX_IDS);
+        if(tauler.getEmptyCount() <= buitsFinals && tauler.getMoves() != 0){
+            stopPondering();
+            return resolFinal(tauler);
+        }
+
+        List<Future<SearchStats>> ajudants = iniciaHelpers(tauler);
+        if(principal != null){
+            principal.ponder = false;
+            espera(ponderFuture);
+            ponderWorker = null;
+            stats.origen = "pondering";
+        }
+        else{
+            principal = new SearchWorker(tauler, false, 1);
+            principal.call();
+        }
+        ponderFuture = null;
+        stats.suma(principal.stats);
+        stats.iteracions.addAll(principal.stats.iteracions);
+        aturaHelpers(ajudants);
+        cntNodes = (int) stats.nodes;
+        stats.valor = principal.millorMov != null ? principal.millorMov.heuristica : 0;
+        Point posicio;
+        if (principal.millorMov != null) {
+            posicio = principal.millorMov.position;
+        } else if (tauler.getMoves() != 0) {
+            posicio = BitBoard.toPoint(Long.numberOfTrailingZeros(tauler.getMoves()));
+        } else {
+            //  sense moviments ni cap iteració acabada: passem, com iteracio
+            posicio = new Point();
+        }
+        iniciaPonder(tauler, BitBoard.toIndex(posicio));
+        return new Move(posicio, cntNodes, principal.profAcabada, SearchType.MINIMAX_IDS);
     }
-    
+
     /**
-     * Funció que retorna el millor moviment per a un estat de joc
-     * i una profunditat determinada, per a cada node afegeix una nova
-     * entrada a la taula de transposició.
-     * @param s l'estat de joc actual.
-     * @param depth la màxima profunditat de la cerca minimax.
-     * @return un Point que representa la posició del moviment.
-     */
-    MyPair triaPosició(MyGameStatus s, int depth){
-        int bestIndexStored = -1;
-        long hash = getHash(s);
-        InfoNode storedResult = tTransp[(int)(hash%N)];
-        long currentNum1 = s.getBoard_occupied().toLongArray()[0];
-        long currentNum2 = s.getBoard_color().toLongArray()[0];
-        if(storedResult != null && storedResult.num1 == currentNum1 && storedResult.num2 == currentNum2){
-            bestIndexStored = storedResult.indexMillorFill;
+     * Activa o desactiva el pondering: després de cada jugada, un fil
+     * continua cercant mentre pensa el contrincant, sobre la posició que
+     * quedarà si fa la resposta que tenim a la taula de transposició, o
+     * sobre totes les seves respostes si no en tenim cap. Si a la jugada
+     * següent la predicció és bona, la cerca en curs passa a ser la
+     * principal; si no, la taula ja està calenta igualment.
+     * @param pondering true per pensar durant el temps del contrincant.
+     */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+        if (!pondering) {
+            stopPondering();
         }
-        
-        boolean exact = true;
-        int bestIndexToStore = 0;
-        ArrayList<Point> moves = s.getMoves();
-        int maxEval = Integer.MIN_VALUE;
-        Point bestMove = new Point();
-        boolean bestVisited = false;
-        for (int i = 0; i < moves.size(); i++) {
-            if(timeOut){
-                break;
+    }
+
+    /**
+     * Atura el pondering en curs, per exemple quan s'ha acabat la partida.
+     */
+    public void stopPondering() {
+        if (ponderFuture != null) {
+            stopPonder = true;
+            espera(ponderFuture);
+            ponderFuture = null;
+            ponderWorker = null;
+        }
+    }
+
+    /**
+     * Atura el pondering i tanca els fils ajudants i el de pondering. Cal
+     * cridar-lo quan ja no es farà servir el jugador; si després es torna
+     * a cridar move, els fils es tornen a crear.
+     */
+    @Override
+    public void close() {
+        stopPondering();
+        if (helpers != null) {
+            helpers.shutdown();
+            helpers = null;
+        }
+        if (ponderExecutor != null) {
+            ponderExecutor.shutdown();
+            ponderExecutor = null;
+        }
+    }
+
+    /**
+     * Comença a pensar sobre la jugada del contrincant.
+     * @param tauler el tauler abans de la nostra jugada.
+     * @param sq la casella que hem jugat.
+     */
+    private void iniciaPonder(SearchBoard tauler, int sq) {
+        if (!pondering || ((tauler.getMoves() >>> sq) & 1) == 0) {
+            return;
+        }
+        SearchBoard despres = new SearchBoard(tauler);
+        despres.makeMove(sq);
+        boolean totesRespostes = false;
+        if (despres.getMoves() == 0) {
+            if (despres.getOpponentMoves() == 0) {
+                return;
             }
-            if(i==bestIndexStored && bestVisited && i<moves.size()-1){
-                i++;
+            //  el contrincant ha de passar: la predicció és segura
+            despres.pass();
+        } else {
+            int sim = simetria(despres);
+            long storedResult = tTransp.probe(clau(despres, sim));
+            int resposta = storedResult != TranspositionTable.MISS
+                    ? casellaSimetrica(TranspositionTable.move(storedResult), BitBoard.inverseSymmetry(sim)) : -1;
+            if (resposta >= 0 && ((despres.getMoves() >>> resposta) & 1) != 0) {
+                long flips = despres.makeMove(resposta);
+                //  si després de la resposta hem de passar, millor cercar-les totes
+                totesRespostes = despres.getMoves() == 0;
+                if (totesRespostes) {
+                    despres.unmakeMove(resposta, flips);
+                }
+            } else {
+                totesRespostes = true;
             }
-            if(bestIndexStored != -1 && !bestVisited && bestIndexStored<moves.size()){
-                i = bestIndexStored;
+        }
+        //  els finals els resol el solver, que no fa servir aquesta taula
+        if (despres.getEmptyCount() <= buitsFinals) {
+            return;
+        }
+        if (ponderExecutor == null) {
+            ponderExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "PlayerID-ponder");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        stopPonder = false;
+        ponderWorker = new SearchWorker(despres, false, 1);
+        ponderWorker.ponder = true;
+        ponderWorker.totesRespostes = totesRespostes;
+        ponderFuture = ponderExecutor.submit(ponderWorker);
+    }
+
+    /**
+     * Atura el pondering si no ha encertat la posició.
+     * @param tauler el tauler de la jugada actual.
+     * @return el fil de pondering si ha encertat la posició, o null.
+     */
+    private SearchWorker recullPonder(SearchBoard tauler) {
+        if (ponderFuture == null) {
+            return null;
+        }
+        SearchWorker worker = ponderWorker;
+        if (!worker.totesRespostes && worker.arrelHash == tauler.getHash()
+                && worker.arrelPlayer == tauler.getPlayer()
+                && worker.arrelOpponent == tauler.getOpponent()) {
+            return worker;
+        }
+        stopPondering();
+        return null;
+    }
+
+    /**
+     * Espera que acabi un fil de cerca.
+     * @return les seves estadístiques, o null si ha fallat.
+     */
+    private SearchStats espera(Future<SearchStats> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            //  una cerca que falla no invalida la resta
+        }
+        return null;
+    }
+
+    /**
+     * Final de partida: primer una IDS curta, fins a PROF_RESERVA, que
+     * costa poc i dona un moviment de reserva; després es resol si guanyem,
+     * empatem o perdem (WLD) i, si encara queda temps, la diferència exacta
+     * de fitxes. Si el WLD no s'acaba a temps, el millor moviment a mitges
+     * del solver no val res i es juga el de l'IDS; si el que no s'acaba és
+     * l'exacte, es juga el del WLD.
+     * @param tauler el tauler de l'arrel.
+     * @return el moviment que fa el jugador.
+     */
+    private Move resolFinal(SearchBoard tauler) {
+        if (solver == null) {
+            solver = new EndgameSolver(this::aturaFinal);
+        }
+        SearchWorker reserva = new SearchWorker(tauler, false, 1);
+        reserva.profLimit = Math.min(profmax, PROF_RESERVA);
+        reserva.call();
+        stats.suma(reserva.stats);
+        stats.iteracions.addAll(reserva.stats.iteracions);
+
+        long p = tauler.getPlayer(), o = tauler.getOpponent();
+        long nodesInicials = solver.getNodes();
+        EndgameSolver.Resultat millor = aturaFinal() ? null : solver.solveWLD(p, o);
+        if (millor != null && millor.complet) {
+            EndgameSolver.Resultat exacte = solver.solveExact(p, o, millor);
+            if (exacte.complet) {
+                millor = exacte;
             }
-            MyGameStatus fill = new MyGameStatus(s);
-            fill.movePiece(moves.get(i));
-            int eval = minValor(fill, depth-1, Integer.MIN_VALUE, Integer.MAX_VALUE);
-            if(maxEval < eval){
-                maxEval = eval;
-                bestMove = moves.get(i);
-                bestIndexToStore = i;
+        }
+        stats.nodes += solver.getNodes() - nodesInicials;
+        cntNodes = (int) stats.nodes;
+        if ((millor == null || !millor.complet) && reserva.millorMov != null) {
+            stats.valor = reserva.millorMov.heuristica;
+            return new Move(reserva.millorMov.position, cntNodes, reserva.profAcabada, SearchType.MINIMAX_IDS);
+        }
+        if (millor == null) {
+            //  ni l'IDS ha acabat cap iteració: el primer moviment legal
+            return new Move(BitBoard.toPoint(Long.numberOfTrailingZeros(tauler.getMoves())), cntNodes, 0,
+                    SearchType.MINIMAX_IDS);
+        }
+        stats.origen = "final";
+        stats.valor = millor.score;
+        return new Move(BitBoard.toPoint(millor.sq), cntNodes, tauler.getEmptyCount(), SearchType.MINIMAX_IDS);
+    }
+
+    /**
+     * Llança els fils ajudants de Lazy SMP sobre còpies del tauler. Els
+     * senars comencen un nivell més avall per no cercar tots la mateixa
+     * profunditat alhora.
+     * @param tauler el tauler de l'arrel.
+     * @return els resultats pendents dels ajudants.
+     */
+    private List<Future<SearchStats>> iniciaHelpers(SearchBoard tauler) {
+        List<Future<SearchStats>> ajudants = new ArrayList<>();
+        if (numThreads <= 1) {
+            return ajudants;
+        }
+        if (helpers == null) {
+            helpers = Executors.newFixedThreadPool(numThreads - 1, r -> {
+                Thread t = new Thread(r, "PlayerID-helper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        stopHelpers = false;
+        for (int i = 1; i < numThreads; i++) {
+            ajudants.add(helpers.submit(new SearchWorker(new SearchBoard(tauler), true, 1 + (i % 2))));
+        }
+        return ajudants;
+    }
+
+    /**
+     * Atura els fils ajudants, espera que acabin i en suma les
+     * estadístiques a les de la jugada.
+     * @param ajudants els resultats pendents dels ajudants.
+     */
+    private void aturaHelpers(List<Future<SearchStats>> ajudants) {
+        stopHelpers = true;
+        for (Future<SearchStats> f : ajudants) {
+            stats.suma(espera(f));
+        }
+    }
+
+    /**
+     * @return la simetria que porta s a la seva forma canònica, o 0 si ja
+     * hi és o si té massa fitxes per buscar-la.
+     */
+    private int simetria(BitBoard s) {
+        if (Long.bitCount(s.getPlayer() | s.getOpponent()) >= fitxesSimetria) {
+            return 0;
+        }
+        return BitBoard.canonicalSymmetry(s.getPlayer(), s.getOpponent());
+    }
+
+    /**
+     * @return la clau de s a la taula de transposició: el hash de la seva
+     * forma canònica, amb el color del jugador de l'arrel.
+     */
+    private long clau(BitBoard s, int sim) {
+        if (sim == 0) {
+            return s.getHash() ^ salClau;
+        }
+        return BitBoard.hash(BitBoard.symmetry(s.getPlayer(), sim),
+                BitBoard.symmetry(s.getOpponent(), sim), s.getCurrentPlayer()) ^ salClau;
+    }
+
+    /**
+     * @return la casella sq transformada per sim; -1 es queda igual.
+     */
+    private static int casellaSimetrica(int sq, int sim) {
+        return sq < 0 || sim == 0 ? sq : BitBoard.symmetrySquare(sq, sim);
+    }
+
+    /**
+     * Si la posició és simètrica, deixa només un moviment de cada grup de
+     * moviments equivalents: de cada parell casella-imatge es queda el de
+     * la casella més petita.
+     * @param s l'estat de joc de l'arrel.
+     * @param moves màscara de moviments legals.
+     * @return els moviments que cal cercar.
+     */
+    private long senseSimetrics(BitBoard s, long moves) {
+        long p = s.getPlayer(), o = s.getOpponent();
+        if (Long.bitCount(p | o) >= fitxesSimetria) {
+            return moves;
+        }
+        for (int sim = 1; sim < 8; sim++) {
+            if (BitBoard.symmetry(p, sim) != p || BitBoard.symmetry(o, sim) != o) {
+                continue;
             }
-            if(bestIndexStored != -1 && !bestVisited){
-                i = 0;
-                bestVisited = true;
+            for (long m = moves; m != 0; m &= m - 1) {
+                int sq = Long.numberOfTrailingZeros(m);
+                int imatge = BitBoard.symmetrySquare(sq, sim);
+                if (imatge < sq && ((moves >>> imatge) & 1) != 0) {
+                    moves &= ~(1L << sq);
+                }
             }
         }
-        
-        tTransp[(int)(getHash(s)%N)] = new InfoNode((byte) bestIndexToStore,  currentNum1, currentNum2 ,depth, maxEval, exact);
-        return new MyPair(bestMove, maxEval);
+        return moves;
     }
 
     /**
-     * Funció que utilitza l'algorisme minimax amb poda alpha-beta
-     * per obtenir el valor amb mínima heurística, per a cada node
-     * afegeix una nova entrada a la taula de transposició.
+     * @return v limitat al rang d'un int.
+     */
+    private static int satura(long v) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, v));
+    }
+
+    /**
+     * Valor d'un estat terminal: guanyem o guanya el contrincant.
      * @param s l'estat de joc actual.
-     * @param depth la màxima profunditat de la cerca minimax.
-     * @param beta valor beta.
-     * @param alpha valor alpha.
-     * @return el valor heurístic més petit possible a partir del estat actual.
+     * @return la valoració de la partida acabada.
+     */
+    private int valorFinal(SearchBoard s){
+        return valorFinal(s.getDiscs(myType), s.getDiscs(opponentType));
+    }
+
+    /**
+     * @return el valor de partida acabada amb les fitxes my nostres i opp
+     * del contrincant.
+     */
+    private static int valorFinal(long my, long opp){
+        if(Long.bitCount(my) > Long.bitCount(opp))      //  Guanyem nosaltres
+            return Integer.MAX_VALUE-1;
+        else                                            //  Guanya el contrincant
+            return Integer.MIN_VALUE+1;
+    }
+
+    /**
+     * Fil de cerca. Cada fil té el seu propi tauler, on fa i desfà els
+     * moviments, i el seu comptador de nodes; la taula de transposició és
+     * compartida. El fil principal fa l'IDS de move() i els ajudants de
+     * Lazy SMP recorren la mateixa arrel començant a profunditats
+     * esglaonades per omplir la taula.
      */
-    int minValor(MyGameStatus s, int depth, int alpha, int beta){
-        ++cntNodes;
+    private class SearchWorker implements Callable<SearchStats> {
+        private final SearchBoard tauler;
+        //  l'arrel tal com era en crear el fil; tauler canvia mentre cerca
+        private final long arrelHash, arrelPlayer, arrelOpponent;
+        private final boolean helper;
+        private final int profInicial;
+        private int cntNodes;
+        //  killers de cada nivell, indexats pel nombre de buits
+        private final int[][] killers = new int[65][2];
+        //  història per color i casella: com més talls ha fet, abans es prova
+        private final int[][] historia = new int[2][64];
+        //  moviments ordenats de cada nivell
+        private final int[][] ordres = new int[65][32];
+        //  estadístiques del fil; els nodes s'hi copien en acabar
+        private final SearchStats stats = new SearchStats();
+        //  cerca de pondering: només l'atura stopPonder fins que move la
+        //  recull i la passa a principal
+        private volatile boolean ponder;
+        //  pondering sobre totes les respostes: l'arrel és del contrincant
+        private boolean totesRespostes;
+        //  resultat de l'última iteració acabada de l'IDS
+        private MyPair millorMov;
+        private int profAcabada;
+        private int previ;
+        //  primera profunditat que l'IDS ja no cerca
+        private int profLimit = profmax;
+        //  fills d'un node a profunditat 1 per avaluar-los en bloc
+        private final long[] blocMy = new long[64];
+        private final long[] blocOpp = new long[64];
+        //  posició dins l'ordre de cada fill del bloc
+        private final int[] blocIndex = new int[64];
+        private final int[] blocAvaluats = new int[64];
+        private final int[] blocValors = new int[64];
+        //  valor del fill que ha refutat el node a etc
+        private int valorEtc;
 
-        if(s.checkGameOver()){                  //ha guanyat algu
-            if(myType == s.GetWinner())             //  Guanyem nosaltres
-                return Integer.MAX_VALUE-1;
-            else                                    //  Guanya el contrincant
-                return Integer.MIN_VALUE+1;
+        SearchWorker(SearchBoard tauler, boolean helper, int profInicial) {
+            this.tauler = tauler;
+            this.arrelHash = tauler.getHash();
+            this.arrelPlayer = tauler.getPlayer();
+            this.arrelOpponent = tauler.getOpponent();
+            this.helper = helper;
+            this.profInicial = profInicial;
+            this.cntNodes = 0;
+            for (int[] k : killers) {
+                k[0] = k[1] = -1;
+            }
         }
-        else if(s.isGameOver() || depth==0){    //no hi ha moviments possibles o profunditat es 0
-            return heuristica(s);
+
+        /**
+         * Ordena els moviments: primer el guardat a la taula de
+         * transposició, després els killers d'aquest nivell i la resta de
+         * més a menys història.
+         * @param s l'estat de joc actual.
+         * @param moves màscara de moviments legals.
+         * @param bestStored casella guardada a la taula o -1.
+         * @param ordre on es deixen les caselles ordenades.
+         * @return quants moviments hi ha.
+         */
+        private int ordena(SearchBoard s, long moves, int bestStored, int[] ordre) {
+            int n = 0;
+            if (bestStored >= 0 && ((moves >>> bestStored) & 1) != 0) {
+                ordre[n++] = bestStored;
+                moves &= ~(1L << bestStored);
+            }
+            int[] k = killers[s.getEmptyCount()];
+            for (int i = 0; i < 2; i++) {
+                if (k[i] >= 0 && ((moves >>> k[i]) & 1) != 0) {
+                    ordre[n++] = k[i];
+                    moves &= ~(1L << k[i]);
+                }
+            }
+            int inici = n;
+            int[] h = historia[BitBoard.colorIndex(s.getCurrentPlayer())];
+            for (; moves != 0; moves &= moves - 1) {
+                int sq = Long.numberOfTrailingZeros(moves);
+                int i = n++;
+                while (i > inici && h[ordre[i - 1]] < h[sq]) {
+                    ordre[i] = ordre[i - 1];
+                    i--;
+                }
+                ordre[i] = sq;
+            }
+            return n;
         }
-        
-        int bestIndexStored = -1;
-        long hash = getHash(s);
-        InfoNode storedResult = tTransp[(int)(hash%N)];
-        long currentNum1 = s.getBoard_occupied().toLongArray()[0];
-        long currentNum2 = s.getBoard_color().toLongArray()[0];
-        if(storedResult != null ){
-            if(storedResult.num1 == currentNum1 && storedResult.num2 == currentNum2){
-                if(storedResult.nivellsPerSota >= depth){
-                    if(storedResult.isExact == true){
-                        return storedResult.heur;
-                    }
-                    else if(storedResult.isExact == false){
-                        beta = storedResult.heur;
+
+        /**
+         * Apunta un tall: la casella passa a killer del nivell i guanya història.
+         * @param s l'estat de joc del node on s'ha tallat.
+         * @param sq casella que ha provocat el tall.
+         * @param index posició de la casella dins l'ordre.
+         * @param depth nivells per sota del node.
+         */
+        private void tall(SearchBoard s, int sq, int index, int depth) {
+            stats.tall(index);
+            int[] k = killers[s.getEmptyCount()];
+            if (k[0] != sq) {
+                k[1] = k[0];
+                k[0] = sq;
+            }
+            int[] h = historia[BitBoard.colorIndex(s.getCurrentPlayer())];
+            h[sq] += depth * depth;
+            if (h[sq] > (1 << 30)) {
+                for (int[] fila : historia) {
+                    for (int i = 0; i < 64; i++) {
+                        fila[i] >>= 1;
                     }
                 }
-                bestIndexStored = storedResult.indexMillorFill;
             }
         }
-        
-        boolean exact = true;
-        int bestIndexToStore = 0;
-        int minEval = Integer.MAX_VALUE;
-        ArrayList<Point> moves = s.getMoves();
-        boolean bestVisited = false;
-        for (int i = 0; i < moves.size(); i++) {
-             if(timeOut){
-                break;
+
+        /**
+         * Bucle IDS dels ajudants; el resultat de cada iteració només
+         * queda a la taula de transposició.
+         * @return les estadístiques del fil.
+         */
+        @Override
+        public SearchStats call() {
+            if (!helper) {
+                ids();
+            } else {
+                int previ = 0;
+                for (int prof = profInicial; !aborta() && prof < profmax; prof++) {
+                    previ = iteracio(tauler, prof, previ).heuristica;
+                }
             }
-             if(i==bestIndexStored && bestVisited && i<moves.size()-1){
-                i++;
+            stats.nodes = cntNodes;
+            return stats;
+        }
+
+        /**
+         * Bucle IDS del fil principal, que també fa el pondering. Només
+         * compten les iteracions acabades: una iteració a mitges no ha mirat
+         * tots els moviments i el seu valor no és comparable; només es fa
+         * servir si no n'hi ha cap d'acabada.
+         */
+        void ids() {
+            for (int prof = profAcabada + 1; prof < profLimit; prof++) {
+                boolean ambTemps = !ponder && temps != null;
+                if (aborta() || (ambTemps && !temps.potComencar())) {
+                    break;
+                }
+                if (ambTemps) {
+                    temps.iniciaIteracio();
+                }
+                SearchIterationEvent event = new SearchIterationEvent();
+                event.begin();
+                long t0 = System.nanoTime();
+                int nodesInicials = cntNodes;
+                MyPair mov;
+                if (totesRespostes) {
+                    //  només volem omplir la taula amb les respostes del contrincant
+                    mov = new MyPair(new Point(), minValor(tauler, prof, Integer.MIN_VALUE, Integer.MAX_VALUE));
+                } else {
+                    mov = iteracio(tauler, prof, previ);
+                }
+                boolean completa = !aborta();
+                stats.iteracions.add(new SearchStats.Iteracio(prof, cntNodes - nodesInicials,
+                        (System.nanoTime() - t0) / 1_000_000, mov.heuristica, completa));
+                if (event.shouldCommit()) {
+                    event.profunditat = prof;
+                    event.nodes = cntNodes - nodesInicials;
+                    event.valor = mov.heuristica;
+                    event.completa = completa;
+                    event.commit();
+                }
+                if (!completa) {
+                    if (millorMov == null && mov.heuristica != Integer.MIN_VALUE && !totesRespostes) {
+                        millorMov = mov;
+                    }
+                    break;
+                }
+                if (!ponder && temps != null) {
+                    temps.iteracioAcabada();
+                }
+                if (!totesRespostes) {
+                    millorMov = mov;
+                }
+                previ = mov.heuristica;
+                profAcabada = prof;
             }
-            if(bestIndexStored != -1 && !bestVisited && bestIndexStored < moves.size()){
-                i = bestIndexStored;
+        }
+
+        /**
+         * @return true si la cerca d'aquest fil s'ha d'aturar.
+         */
+        private boolean aborta() {
+            if (ponder) {
+                return stopPonder;
             }
-            MyGameStatus fill = new MyGameStatus(s);
-            fill.movePiece(moves.get(i));
-            
-            minEval = Math.min(minEval, maxValor(fill, depth-1, alpha, beta));
-            //beta = Math.min(beta, minEval);
-            if(beta > minEval){
-                beta = minEval;
-                bestIndexToStore = i;
+            if (temps != null && (cntNodes & 0x3FF) == 0 && temps.superatHard()) {
+                timeOut = true;
             }
-            if(bestIndexStored != -1 && !bestVisited){
-                i = 0;
-                bestVisited = true;
+            return timeOut || (helper && stopHelpers);
+        }
+
+        /**
+         * Una iteració de l'IDS amb l'algorisme triat.
+         * @param s l'estat de joc actual.
+         * @param depth la profunditat de la iteració.
+         * @param previ valor de la iteració anterior.
+         * @return el millor moviment i el seu valor.
+         */
+        MyPair iteracio(SearchBoard s, int depth, int previ) {
+            if (algorisme == Algorisme.MTDF) {
+                return mtdf(s, depth, previ);
             }
-            if(alpha>=beta){
-                
-                exact = false;
-                break;
+            //  les primeres iteracions són massa inestables per a una finestra
+            if (algorisme == Algorisme.PVS && depth > 2) {
+                return aspiracio(s, depth, previ);
             }
+            return triaPosició(s, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
         }
-        tTransp[(int)(getHash(s)%N)] = new InfoNode((byte) bestIndexToStore, currentNum1, currentNum2, depth, minEval, exact);
-        return minEval;
-    }
 
-    /**
-     * Funció que utilitza l'algorisme minimax amb poda alpha-beta
-     * per obtenir el valor amb màxima heurística, per a cada node
-     * afegeix una nova entrada a la taula de transposició.
-     * @param s l'estat de joc actual.
-     * @param depth la màxima profunditat de la cerca minimax.
-     * @param beta valor beta.
-     * @param alpha valor alpha.
-     * @return el valor heurístic més gran possible a partir del estat actual.
-     */
-    int maxValor(MyGameStatus s, int depth, int alpha, int beta){
-        ++cntNodes;
-        if(s.checkGameOver()){                  //ha guanyat algu
-            if(myType == s.GetWinner())             //  Guanyem nosaltres
-                return Integer.MAX_VALUE-1;
-            else                                    //  Guanya el contrincant
-                return Integer.MIN_VALUE+1;
-        }
-        else if(s.isGameOver() || depth==0){    //no hi ha moviments possibles o profunditat es 0
-            return heuristica(s);
-        }
-        
-        int bestIndexStored = -1;
-        long hash = getHash(s);
-        InfoNode storedResult = tTransp[(int)(hash%N)];
-        long currentNum1 = s.getBoard_occupied().toLongArray()[0];
-        long currentNum2 = s.getBoard_color().toLongArray()[0];
-        if(storedResult != null){
-            if(storedResult.num1 == currentNum1 && storedResult.num2 == currentNum2){
-                if(storedResult.nivellsPerSota >= depth){
-                    if(storedResult.isExact == true){
-                        return storedResult.heur;
-                    }
-                    else if(storedResult.isExact == false){
-                        alpha = storedResult.heur;
-                    }
+        /**
+         * Cerca amb una finestra centrada en el valor de la iteració
+         * anterior. Si el valor en surt, el costat que ha fallat s'eixampla
+         * i es torna a cercar.
+         */
+        private MyPair aspiracio(SearchBoard s, int depth, int previ) {
+            long delta = FINESTRA_ASPIRACIO;
+            int alpha = satura(previ - delta);
+            int beta = satura(previ + delta);
+            while (true) {
+                MyPair mov = triaPosició(s, depth, alpha, beta);
+                if (aborta()) {
+                    return mov;
+                }
+                if (mov.heuristica <= alpha && alpha != Integer.MIN_VALUE) {
+                    delta *= 4;
+                    alpha = satura(mov.heuristica - delta);
+                } else if (mov.heuristica >= beta && beta != Integer.MAX_VALUE) {
+                    delta *= 4;
+                    beta = satura(mov.heuristica + delta);
+                } else {
+                    return mov;
                 }
-                bestIndexStored = storedResult.indexMillorFill;
             }
         }
-        
-        boolean exact = true;
-        int bestIndexToStore = 0;
-        int maxEval = Integer.MIN_VALUE;
-        ArrayList<Point> moves = s.getMoves();
-        boolean bestVisited = false;
-        for (int i = 0; i < moves.size(); i++) {
-            if(timeOut){
-                break;
+
+        /**
+         * MTD(f): només cerques amb finestra nul·la que van acostant una
+         * cota inferior i una de superior fins que coincideixen. Les
+         * passades es fan servir l'una a l'altra a través de les cotes
+         * guardades a la taula de transposició.
+         */
+        private MyPair mtdf(SearchBoard s, int depth, int previ) {
+            int g = previ;
+            int inferior = Integer.MIN_VALUE, superior = Integer.MAX_VALUE;
+            MyPair millor = null;
+            while (inferior < superior && !aborta()) {
+                int beta = (g == inferior) ? g + 1 : g;
+                MyPair mov = triaPosició(s, depth, beta - 1, beta);
+                g = mov.heuristica;
+                if (g < beta) {
+                    superior = g;
+                } else {
+                    inferior = g;
+                }
+                //  el moviment d'una passada que falla per dalt val com a mínim beta
+                if (millor == null || g >= beta) {
+                    millor = mov;
+                }
             }
-            if(i==bestIndexStored && bestVisited && i<moves.size()-1){
-                i++;
+            return millor != null ? millor : new MyPair(new Point(), g);
+        }
+
+        /**
+         * Funció que retorna el millor moviment per a un estat de joc
+         * i una profunditat determinada, per a cada node afegeix una nova
+         * entrada a la taula de transposició. El primer fill es cerca amb
+         * tota la finestra i la resta només es comproven amb una finestra
+         * nul·la (PVS).
+         * @param s l'estat de joc actual.
+         * @param depth la màxima profunditat de la cerca minimax.
+         * @param alpha valor alpha.
+         * @param beta valor beta.
+         * @return un Point que representa la posició del moviment.
+         */
+        MyPair triaPosició(SearchBoard s, int depth, int alpha, int beta){
+            int bestStored = -1;
+            int sim = simetria(s);
+            long hash = clau(s, sim);
+            long storedResult = tTransp.probe(hash);
+            stats.ttConsultes++;
+            if(storedResult != TranspositionTable.MISS){
+                stats.ttEncerts++;
+                bestStored = casellaSimetrica(TranspositionTable.move(storedResult), BitBoard.inverseSymmetry(sim));
             }
-            if(bestIndexStored != -1 && !bestVisited && bestIndexStored<moves.size()){
-                i = bestIndexStored;
+
+            int alphaInicial = alpha;
+            int bestToStore = -1;
+            int[] ordre = ordres[s.getEmptyCount()];
+            int n = ordena(s, senseSimetrics(s, s.getMoves()), bestStored, ordre);
+            int maxEval = Integer.MIN_VALUE;
+            Point bestMove = new Point();
+            for (int i = 0; i < n; i++) {
+                if(aborta()){
+                    break;
+                }
+                int sq = ordre[i];
+                long flips = s.makeMove(sq);
+                int eval = cercaFill(s, depth-1, alpha, beta, i == 0, true);
+                s.unmakeMove(sq, flips);
+                if(maxEval < eval){
+                    maxEval = eval;
+                    bestMove = BitBoard.toPoint(sq);
+                    bestToStore = sq;
+                }
+                alpha = Math.max(alpha, maxEval);
+                if(alpha>=beta){
+                    tall(s, sq, i, depth);
+                    break;
+                }
             }
-            
-            MyGameStatus fill = new MyGameStatus(s);
-            fill.movePiece(moves.get(i));
-            maxEval = Math.max(maxEval, minValor(fill, depth-1, alpha, beta));
-            //alpha = Math.max(alpha, maxEval);
-            if(alpha < maxEval){
-                alpha = maxEval;
-                bestIndexToStore = i;
+
+            if(!aborta()){
+                if(tTransp.store(hash, casellaSimetrica(bestToStore, sim), depth, maxEval, cota(maxEval, alphaInicial, beta))){
+                    stats.ttColisions++;
+                }
             }
-            if(bestIndexStored != -1 && !bestVisited){
-                i = 0;
-                bestVisited = true;
+            return new MyPair(bestMove, maxEval);
+        }
+
+        /**
+         * Valor d'un node a profunditat 1 avaluant els fills en bloc. El
+         * primer moviment de l'ordre s'avalua sol, perquè als nodes on hi ha
+         * tall acostuma a ser ell qui talla; si no talla, la resta de fills
+         * s'avaluen tots d'un cop.
+         * @param s l'estat de joc del node.
+         * @param moves màscara de moviments legals.
+         * @param bestStored casella guardada a la taula o -1.
+         * @param max si el node és nostre.
+         * @param hash clau del node a la taula de transposició.
+         * @param sim simetria de la clau.
+         * @return el valor del node.
+         */
+        private int fillsEnBloc(SearchBoard s, long moves, int bestStored, boolean max,
+                int alpha, int beta, long hash, int sim) {
+            int alphaInicial = alpha, betaInicial = beta;
+            int millor = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            int millorSq = -1, millorIndex = 0;
+            int[] ordre = ordres[s.getEmptyCount()];
+            int n = ordena(s, moves, bestStored, ordre);
+            for (int inici = 0, fi = 1; inici < n; inici = fi, fi = n) {
+                avaluaFills(s, ordre, inici, fi, max);
+                for (int i = inici; i < fi; i++) {
+                    int eval = blocValors[i];
+                    if (max ? eval > millor : eval < millor) {
+                        millor = eval;
+                        millorSq = ordre[i];
+                        millorIndex = i;
+                    }
+                }
+                if (max) {
+                    alpha = Math.max(alpha, millor);
+                } else {
+                    beta = Math.min(beta, millor);
+                }
+                if (alpha >= beta) {
+                    tall(s, millorSq, millorIndex, 1);
+                    break;
+                }
             }
-            if(alpha>=beta){
-                
-                exact = false;
-                break;
+            if (tTransp.store(hash, casellaSimetrica(millorSq, sim), 1, millor, cota(millor, alphaInicial, betaInicial))) {
+                stats.ttColisions++;
             }
+            return millor;
         }
-        tTransp[(int)(getHash(s)%N)] = new InfoNode((byte) bestIndexToStore, currentNum1, currentNum2, depth, maxEval, exact);
-        return maxEval;
-    }
-    
-    /**
-     * Funció que retorna la heuristica de un estat de joc determinat.
-     * @param s l'estat de joc actual.
-     * @return un valor numéric que representa la heuristica del estat de joc actual.
-     */
-    public int heuristica(MyGameStatus s) {
-        int myTiles = 0, oppTiles = 0, myFrontTiles = 0, oppFrontTiles = 0, ret=0, cc=0;
-        double p = 0, c = 0, m = 0, f = 0, d = 0, pi=0, xox=0;
-        // Matriu de pesos 
-        int[][] V = {
-            {20, -15, 8, 8, 8, 8, -15, 20},
-            {-15, -17, -4, 1, 1, -4, -17, -15},
-            {8, -4, 2, 2, 2, 2, -4, 8},
-            {8, 1, 2, -3, -3, 2, 1, 8},
-            {8, 1, 2, -3, -3, 2, 1, 8},
-            {8, -4, 2, 2, 2, 2, -4, 11},
-            {-15, -17, -4, 1, 1, -4, -17, -15},
-            {20, -15, 8, 8, 8, 11, -15, 20}
-                
-                
-        };
-        //  mirem si fem una piramide al corner 0,0 (cel·les ocupades que son immobils)
-        int[] X2 = {0,1,0,2,0,1,2,1,3,0};
-        int[] Y2 = {0,0,1,0,2,1,1,2,0,3};
-        int x =0, y=0;
-        myTiles=0;oppTiles=0;
-        if(s.getPos(x,y)==CellType.PLAYER1 || s.getPos(x,y)==CellType.PLAYER2){
-            CellType mom= s.getPos(x,y);
-            for(int i=0; i<10; i++){
-                int xm=x+X2[i];
-                int ym=y+Y2[i];
-                V[xm][ym]=0;
-                if(s.getPos(xm,ym)==mom){
-                    if(mom == myType){
-                        myTiles+=1;
-                    }
-                    else{
-                        oppTiles+=1;
-                    }
+
+        /**
+         * Deixa a blocValors[inici..fi) el valor dels fills ordre[inici..fi).
+         * Els fills on la partida s'acaba prenen el valor final i la resta
+         * passen per una sola crida a l'avaluació en bloc.
+         */
+        private void avaluaFills(SearchBoard s, int[] ordre, int inici, int fi, boolean max) {
+            long p = s.getPlayer(), o = s.getOpponent();
+            int n = 0;
+            for (int i = inici; i < fi; i++) {
+                int sq = ordre[i];
+                long flips = BitBoard.getFlips(p, o, sq);
+                long mou = p | flips | (1L << sq), altre = o & ~flips;
+                long my = max ? mou : altre, opp = max ? altre : mou;
+                ++cntNodes;
+                if (BitBoard.getMoves(altre, mou) == 0 && BitBoard.getMoves(mou, altre) == 0) {
+                    blocValors[i] = valorFinal(my, opp);
+                    continue;
                 }
+                blocMy[n] = my;
+                blocOpp[n] = opp;
+                blocIndex[n++] = i;
+            }
+            avaluador.evaluate(blocMy, blocOpp, n, blocAvaluats);
+            stats.avaluacions += n;
+            for (int k = 0; k < n; k++) {
+                blocValors[blocIndex[k]] = blocAvaluats[k];
             }
         }
-        //  mirem si fem una piramide al corner 0,7 (cel·les ocupades que son immobils)
-        x =0; y=s.getSize()-1;
-        if(s.getPos(x,y)==CellType.PLAYER1 || s.getPos(x,y)==CellType.PLAYER2){
-            
-            CellType mom= s.getPos(x,y);
-            for(int i=0; i<10; i++){
-                int xm=x+X2[i];
-                int ym=y-Y2[i];
-                V[xm][ym]=0;
-                if(s.getPos(xm,ym)==mom){
-                    if(mom == myType){
-                        myTiles+=1;
-                    }
-                    else{
-                        oppTiles+=1;
-                    }
+
+        /**
+         * Enhanced Transposition Cutoff: abans d'expandir cap fill, es
+         * busquen tots a la taula. Si algun té guardada, amb prou
+         * profunditat, una cota que ja arriba a beta (node nostre) o que no
+         * passa d'alpha (node del contrincant), el node queda resolt sense
+         * cercar-ne cap.
+         * @param s l'estat de joc del node.
+         * @param moves màscara de moviments legals.
+         * @param depth profunditat del node.
+         * @param max si el node és nostre.
+         * @return true si un fill refuta el node; el valor queda a valorEtc.
+         */
+        private boolean etc(SearchBoard s, long moves, int depth, int alpha, int beta, boolean max) {
+            long p = s.getPlayer(), o = s.getOpponent();
+            boolean simetric = Long.bitCount(p | o) + 1 < fitxesSimetria;
+            CellType torn = CellType.opposite(s.getCurrentPlayer());
+            for (; moves != 0; moves &= moves - 1) {
+                int sq = Long.numberOfTrailingZeros(moves);
+                long flips = BitBoard.getFlips(p, o, sq);
+                long clauFill;
+                if (simetric) {
+                    long mou = p | flips | (1L << sq), altre = o & ~flips;
+                    int sim = BitBoard.canonicalSymmetry(altre, mou);
+                    clauFill = BitBoard.hash(BitBoard.symmetry(altre, sim), BitBoard.symmetry(mou, sim), torn);
+                } else {
+                    clauFill = s.hashAfter(sq, flips);
+                }
+                long dada = tTransp.probe(clauFill ^ salClau);
+                stats.etcConsultes++;
+                if (dada == TranspositionTable.MISS || TranspositionTable.depth(dada) < depth - 1) {
+                    continue;
+                }
+                int heur = TranspositionTable.heur(dada);
+                boolean refuta = max
+                        ? heur >= beta && (TranspositionTable.isExact(dada) || TranspositionTable.isLowerBound(dada))
+                        : heur <= alpha && (TranspositionTable.isExact(dada) || TranspositionTable.isUpperBound(dada));
+                if (refuta) {
+                    stats.etcTalls++;
+                    valorEtc = heur;
+                    return true;
                 }
             }
+            return false;
         }
-        
-        //  mirem si fem una piramide al corner 7,0 (cel·les ocupades que son immobils)
-        x =s.getSize()-1; y=0;
-        if(s.getPos(x,y)==CellType.PLAYER1 || s.getPos(x,y)==CellType.PLAYER2){
-            CellType mom= s.getPos(x,y);
-            for(int i=0; i<10; i++){
-                int xm=x-X2[i];
-                int ym=y+Y2[i];
-                V[xm][ym]=0;
-                if(s.getPos(xm,ym)==mom){
-                    if(mom == myType){
-                        myTiles+=1;
+
+        /**
+         * Multi-ProbCut: amb una cerca curta de finestra nul·la es mira si,
+         * segons la regressió de la fase i profunditat del node, la cerca
+         * completa quedaria per sobre de beta o per sota d'alpha amb el
+         * marge del llindar.
+         * @param s l'estat de joc del node.
+         * @param depth profunditat de la cerca completa.
+         * @param max si el node és nostre.
+         * @return 1 si es preveu un valor &gt;= beta, -1 si es preveu un
+         * valor &lt;= alpha i 0 si cal fer la cerca completa.
+         */
+        private int provaProbCut(SearchBoard s, int depth, int alpha, int beta, boolean max) {
+            int fase = probCut.fase(64 - s.getEmptyCount());
+            int curta = probCut.prima(fase, depth);
+            if (curta <= 0) {
+                return 0;
+            }
+            if (beta != Integer.MAX_VALUE) {
+                long cota = probCut.cotaSuperior(fase, depth, beta, llindarProbCut, max);
+                if (cota > Integer.MIN_VALUE + 1 && cota < Integer.MAX_VALUE - 1) {
+                    int c = (int) cota;
+                    int eval = max ? maxValor(s, curta, c - 1, c) : minValor(s, curta, c - 1, c);
+                    if (!aborta() && eval >= c) {
+                        stats.probCutTalls++;
+                        return 1;
                     }
-                    else{
-                        oppTiles+=1;
+                }
+            }
+            if (alpha != Integer.MIN_VALUE) {
+                long cota = probCut.cotaInferior(fase, depth, alpha, llindarProbCut, max);
+                if (cota > Integer.MIN_VALUE + 1 && cota < Integer.MAX_VALUE - 1) {
+                    int c = (int) cota;
+                    int eval = max ? maxValor(s, curta, c, c + 1) : minValor(s, curta, c, c + 1);
+                    if (!aborta() && eval <= c) {
+                        stats.probCutTalls++;
+                        return -1;
                     }
                 }
             }
+            return 0;
         }
-        //  mirem si fem una piramide al corner 7,7 (cel·les ocupades que son immobils)
-        x =s.getSize()-1; y=s.getSize()-1;
-        if(s.getPos(x,y)==CellType.PLAYER1 || s.getPos(x,y)==CellType.PLAYER2){
-            CellType mom= s.getPos(x,y);
-            for(int i=0; i<10; i++){
-                int xm=x-X2[i];
-                int ym=y-Y2[i];
-                V[xm][ym]=0;
-                if(s.getPos(xm,ym)==mom){
-                    if(mom == myType){
-                        myTiles+=1;
-                    }
-                    else{
-                        oppTiles+=1;
-                    }
-                    
+
+        /**
+         * Cerca un fill amb PVS: el primer amb la finestra (alpha, beta) i
+         * els altres amb una finestra nul·la que només diu si milloren el
+         * millor valor trobat; només si el milloren es tornen a cercar amb
+         * tota la finestra.
+         * @param s l'estat de joc amb el moviment ja fet.
+         * @param depth nivells per sota del fill.
+         * @param primer true si és el primer fill del node.
+         * @param max true si el pare és un node max.
+         * @return el valor del fill.
+         */
+        private int cercaFill(SearchBoard s, int depth, int alpha, int beta, boolean primer, boolean max) {
+            if (primer || algorisme == Algorisme.ALPHABETA || beta - (long) alpha <= 1) {
+                return max ? minValor(s, depth, alpha, beta) : maxValor(s, depth, alpha, beta);
+            }
+            if (max) {
+                int eval = minValor(s, depth, alpha, alpha + 1);
+                if (eval > alpha && eval < beta) {
+                    eval = minValor(s, depth, alpha, beta);
                 }
+                return eval;
             }
+            int eval = maxValor(s, depth, beta - 1, beta);
+            if (eval < beta && eval > alpha) {
+                eval = maxValor(s, depth, alpha, beta);
+            }
+            return eval;
         }
-        if (myTiles > oppTiles) {
-            pi = (100.0 * myTiles) / (myTiles + oppTiles);
-        } else if (myTiles < oppTiles) {
-            pi = -(100.0 * oppTiles) / (myTiles + oppTiles);
-        } else {
-            pi = 0;
+
+        /**
+         * @return el tipus de cota d'un valor obtingut amb la finestra (alpha, beta).
+         */
+        private int cota(int valor, int alpha, int beta) {
+            if (valor <= alpha) {
+                return TranspositionTable.SUPERIOR;
+            } else if (valor >= beta) {
+                return TranspositionTable.INFERIOR;
+            }
+            return TranspositionTable.EXACTA;
         }
-        
-        //  mirem cas X0X nostre en les files del cantó (de 0,0 a 7,0) i (0,7 a 7,7)
-        myTiles=0;oppTiles=0;
-        x=0;y=0;
-        for(int i=0; i<s.getSize()-3; ++i){
-            int xm=x+i;
-            if ((s.getPos(xm,y) == opponentType)){
-                if(s.getPos(xm+2,y) == opponentType && s.getPos(xm+1,y)==myType){
-                    myTiles += 1;
-                }
-                y=s.getSize()-1;
-                if(s.getPos(xm+2,y) == opponentType && s.getPos(xm+1,y)==myType){
-                    myTiles += 1;
+
+        /**
+         * Mira si la taula de transposició ja resol el node amb la finestra
+         * (alpha, beta).
+         * @return true si el valor guardat ja és el resultat del node.
+         */
+        private boolean resolPerTaula(long storedResult, int depth, int alpha, int beta) {
+            if (TranspositionTable.depth(storedResult) < depth) {
+                return false;
+            }
+            int heur = TranspositionTable.heur(storedResult);
+            return TranspositionTable.isExact(storedResult)
+                    || (TranspositionTable.isLowerBound(storedResult) && heur >= beta)
+                    || (TranspositionTable.isUpperBound(storedResult) && heur <= alpha);
+        }
+
+        /**
+         * Funció que utilitza l'algorisme minimax amb poda alpha-beta
+         * per obtenir el valor amb mínima heurística, per a cada node
+         * afegeix una nova entrada a la taula de transposició.
+         * @param s l'estat de joc actual.
+         * @param depth la màxima profunditat de la cerca minimax.
+         * @param alpha valor alpha.
+         * @param beta valor beta.
+         * @return el valor heurístic més petit possible a partir del estat actual.
+         */
+        int minValor(SearchBoard s, int depth, int alpha, int beta){
+            ++cntNodes;
+
+            long moves = s.getMoves();
+            if(moves == 0){
+                if(s.getOpponentMoves() == 0){      //ha guanyat algu
+                    return valorFinal(s);
                 }
+                //  el contrincant no pot tirar: passa i ens toca a nosaltres
+                s.pass();
+                int eval = maxValor(s, depth, alpha, beta);
+                s.pass();
+                return eval;
             }
-            if ((s.getPos(xm,y) == myType)){
-                if(s.getPos(xm+2,y) == myType && s.getPos(xm+1,y)==opponentType){
-                    oppTiles += 1;
+            else if(depth==0){                      //profunditat es 0
+                stats.avaluacions++;
+                return heuristica(s);
+            }
+
+            int bestStored = -1;
+            int sim = simetria(s);
+            long hash = clau(s, sim);
+            long storedResult = tTransp.probe(hash);
+            stats.ttConsultes++;
+            if(storedResult != TranspositionTable.MISS){
+                stats.ttEncerts++;
+                if(resolPerTaula(storedResult, depth, alpha, beta)){
+                    stats.ttTalls++;
+                    return TranspositionTable.heur(storedResult);
                 }
-                y=s.getSize()-1;
-                if(s.getPos(xm+2,y) == myType && s.getPos(xm+1,y)==opponentType){
-                    oppTiles += 1;
+                bestStored = casellaSimetrica(TranspositionTable.move(storedResult), BitBoard.inverseSymmetry(sim));
+            }
+            if(profETC > 0 && depth >= profETC && etc(s, moves, depth, alpha, beta, false)){
+                return valorEtc;
+            }
+            if(probCut != null){
+                int previst = provaProbCut(s, depth, alpha, beta, false);
+                if(previst != 0){
+                    return previst > 0 ? beta : alpha;
                 }
             }
-        }
-        //  mirem cas X0X nostre en les columnes del cantó (de 0,0 a 0,7) i (7,0 a 7,7)
-        x=0;y=0;
-        for(int i=0; i<s.getSize()-3; ++i){
-            int ym=y+i;
-            if ((s.getPos(x,ym) == opponentType)){
-                if(s.getPos(x,ym+2) == opponentType && s.getPos(x,ym+1)==myType){
-                    myTiles += 1;
+            if(depth == 1 && avaluacioEnBloc){
+                return fillsEnBloc(s, moves, bestStored, false, alpha, beta, hash, sim);
+            }
+
+            int betaInicial = beta;
+            int bestToStore = -1;
+            int minEval = Integer.MAX_VALUE;
+            int[] ordre = ordres[s.getEmptyCount()];
+            int n = ordena(s, moves, bestStored, ordre);
+            for (int i = 0; i < n; i++) {
+                if(aborta()){
+                    break;
                 }
-                x=s.getSize()-1;
-                if(s.getPos(x,ym+2) == opponentType && s.getPos(x,ym+1)==myType){
-                    myTiles += 1;
+                int sq = ordre[i];
+                long flips = s.makeMove(sq);
+                int eval = cercaFill(s, depth-1, alpha, beta, i == 0, false);
+                s.unmakeMove(sq, flips);
+                if(eval < minEval){
+                    minEval = eval;
+                    bestToStore = sq;
                 }
-            }
-            if ((s.getPos(x,ym) == myType)){
-                if(s.getPos(x,ym+2) == myType && s.getPos(x,ym+1)==opponentType){
-                    oppTiles += 1;
+                beta = Math.min(beta, minEval);
+                if(alpha>=beta){
+                    tall(s, sq, i, depth);
+                    break;
                 }
-                x=s.getSize()-1;
-                if(s.getPos(x,ym+2) == myType && s.getPos(x,ym+1)==opponentType){
-                    oppTiles += 1;
+            }
+            if(!aborta()){
+                if(tTransp.store(hash, casellaSimetrica(bestToStore, sim), depth, minEval, cota(minEval, alpha, betaInicial))){
+                    stats.ttColisions++;
                 }
             }
+            return minEval;
         }
-        if (myTiles > oppTiles) {
-            xox = (100.0 * myTiles) / (myTiles + oppTiles);
-        } else if (myTiles < oppTiles) {
-            xox = -(100.0 * oppTiles) / (myTiles + oppTiles);
-        } else {
-            xox = 0;
-        }
-        //  mirem la taula de valors i les fitxer frontera (fitxes que tenen al
-        //  costat fitxes buides) mirar documentació per saber que es una fitxa frontera.
-        
-        int[] X1 = {-1, -1, 0, 1, 1, 1, 0, -1};
-        int[] Y1 = {0, 1, 1, 1, 0, -1, -1, -1};
-        
-        for (int i = 0; i < s.getSize(); i++) {
-            for (int j = 0; j < s.getSize(); j++) {
-                if (s.getPos(i,j) == myType) {
-                    d += V[i][j];
-
-                } else if (s.getPos(i,j) == opponentType) {
-                    d -= V[i][j];
-                }
-                if (s.getPos(i,j) == opponentType || s.getPos(i,j) == myType) {
-                    for (int k = 0; k < 8; k++) {
-                        x = i + X1[k];
-                        y = j + Y1[k];
-                        if (x >= 0 && x < 8 && y >= 0 && y < 8 && (s.getPos(x,y) == CellType.EMPTY)) {
-                            if (s.getPos(i,j) == myType){
-                                myFrontTiles++;
-                            } else if(s.getPos(i,j) == opponentType){
-                                oppFrontTiles++;
-                            }
-                        }
-                    }
+
+        /**
+         * Funció que utilitza l'algorisme minimax amb poda alpha-beta
+         * per obtenir el valor amb màxima heurística, per a cada node
+         * afegeix una nova entrada a la taula de transposició.
+         * @param s l'estat de joc actual.
+         * @param depth la màxima profunditat de la cerca minimax.
+         * @param alpha valor alpha.
+         * @param beta valor beta.
+         * @return el valor heurístic més gran possible a partir del estat actual.
+         */
+        int maxValor(SearchBoard s, int depth, int alpha, int beta){
+            ++cntNodes;
+
+            long moves = s.getMoves();
+            if(moves == 0){
+                if(s.getOpponentMoves() == 0){      //ha guanyat algu
+                    return valorFinal(s);
                 }
+                //  no podem tirar: passem i li toca al contrincant
+                s.pass();
+                int eval = minValor(s, depth, alpha, beta);
+                s.pass();
+                return eval;
             }
-        }
-        //  mirem el nombre de fitxes de cada jugador
-        myTiles=s.getScore(myType);
-        oppTiles=s.getScore(opponentType);
-        if (myTiles > oppTiles) {
-            p = (100.0 * myTiles) / (myTiles + oppTiles);
-        } else if (myTiles < oppTiles) {
-            p = -(100.0 * oppTiles) / (myTiles + oppTiles);
-        } else {
-            p = 0;
-        }
-        //  posem les fitxes frontera en tant per cent
-        if (myFrontTiles > oppFrontTiles) {
-            f = -(100.0 * myFrontTiles) / (myFrontTiles + oppFrontTiles);
-        } else if (myFrontTiles < oppFrontTiles) {
-            f = (100.0 * oppFrontTiles) / (myFrontTiles + oppFrontTiles);
-        } else {
-            f = 0;
-        }
-
-        // mirem l'ocupació dels corners
-        myTiles = oppTiles = 0;
-        if (s.getPos(0,0) == myType) {
-            myTiles += 1;
-        }
-        else if (s.getPos(0,0) == (opponentType)) {
-            oppTiles += 1;
-        }
-        if (s.getPos(0,s.getSize()-1) == myType) {
-            myTiles += 1;
-        }
-        else if (s.getPos(0,s.getSize()-1) == (opponentType)) {
-            oppTiles += 1;
-        }
-        if (s.getPos(s.getSize()-1,0) == myType) {
-            myTiles += 1;
-        }
-        else if (s.getPos(s.getSize()-1,0) == (opponentType)) {
-            oppTiles += 1;
-        }
-        if (s.getPos(s.getSize()-1, s.getSize()-1) == myType) {
-            myTiles += 1;
-        }
-        else if (s.getPos(s.getSize()-1, s.getSize()-1) == (opponentType)) {
-            oppTiles += 1;
-        }
-
-        c = 25 * (myTiles - oppTiles);
-
-        // mirem la mobilitat de cada jugador
-        myTiles = oppTiles = 0;
-        for (int i = 0; i < s.getSize(); i++) {
-            for (int j = 0; j < s.getSize(); j++) {
-                if (s.getPos(i,j) == myType) {
-                    for (int k = 0; k < s.getSize(); k++) {
-                        x = i + X1[k];
-                        y = j + Y1[k];
-                        if (x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize() && s.getPos(x,y) == opponentType) {
-                            x += X1[k];
-                            y += Y1[k];
-                            boolean inside = x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize();
-                            if(inside){
-                                CellType auxCell = s.getPos(x, y);
-                                while(auxCell != CellType.EMPTY && auxCell != myType && inside){
-                                    x += X1[k];
-                                    y += Y1[k];
-                                    inside = x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize();
-                                    if(inside)
-                                        auxCell = s.getPos(x, y);
-                                }
-                                if (auxCell == CellType.EMPTY  && inside) {
-                                    myTiles++;
-                                }
-                            }
-                        }
-                    }
+            else if(depth==0){                      //profunditat es 0
+                stats.avaluacions++;
+                return heuristica(s);
+            }
+
+            int bestStored = -1;
+            int sim = simetria(s);
+            long hash = clau(s, sim);
+            long storedResult = tTransp.probe(hash);
+            stats.ttConsultes++;
+            if(storedResult != TranspositionTable.MISS){
+                stats.ttEncerts++;
+                if(resolPerTaula(storedResult, depth, alpha, beta)){
+                    stats.ttTalls++;
+                    return TranspositionTable.heur(storedResult);
                 }
+                bestStored = casellaSimetrica(TranspositionTable.move(storedResult), BitBoard.inverseSymmetry(sim));
             }
-        }
-        for (int i = 0; i < s.getSize(); i++) {
-            for (int j = 0; j < s.getSize(); j++) {
-                if (s.getPos(i,j) == opponentType) {
-                    for (int k = 0; k < s.getSize(); k++) {
-                        x = i + X1[k];
-                        y = j + Y1[k];
-                        if (x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize() && s.getPos(x,y) == myType) {
-                            x += X1[k];
-                            y += Y1[k];
-                            boolean inside = x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize();
-                            if(inside){
-                                CellType auxCell = s.getPos(x, y);
-                                while(auxCell != CellType.EMPTY && auxCell != opponentType  && inside){
-                                    x += X1[k];
-                                    y += Y1[k];
-                                    inside = x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize();
-                                    if(inside)
-                                        auxCell = s.getPos(x, y);
-                                }
-                                if (auxCell == CellType.EMPTY  && inside) {
-                                    oppTiles++;
-                                }
-                            }
-                        }
-                    }
+            if(profETC > 0 && depth >= profETC && etc(s, moves, depth, alpha, beta, true)){
+                return valorEtc;
+            }
+            if(probCut != null){
+                int previst = provaProbCut(s, depth, alpha, beta, true);
+                if(previst != 0){
+                    return previst > 0 ? beta : alpha;
                 }
             }
+            if(depth == 1 && avaluacioEnBloc){
+                return fillsEnBloc(s, moves, bestStored, true, alpha, beta, hash, sim);
+            }
+
+            int alphaInicial = alpha;
+            int bestToStore = -1;
+            int maxEval = Integer.MIN_VALUE;
+            int[] ordre = ordres[s.getEmptyCount()];
+            int n = ordena(s, moves, bestStored, ordre);
+            for (int i = 0; i < n; i++) {
+                if(aborta()){
+                    break;
+                }
+                int sq = ordre[i];
+                long flips = s.makeMove(sq);
+                int eval = cercaFill(s, depth-1, alpha, beta, i == 0, true);
+                s.unmakeMove(sq, flips);
+                if(eval > maxEval){
+                    maxEval = eval;
+                    bestToStore = sq;
+                }
+                alpha = Math.max(alpha, maxEval);
+                if(alpha>=beta){
+                    tall(s, sq, i, depth);
+                    break;
+                }
+            }
+            if(!aborta()){
+                if(tTransp.store(hash, casellaSimetrica(bestToStore, sim), depth, maxEval, cota(maxEval, alphaInicial, beta))){
+                    stats.ttColisions++;
+                }
+            }
+            return maxEval;
         }
-        if (myTiles > oppTiles) {
-            m = (100.0 * myTiles) / (myTiles + oppTiles);
-        } else if (myTiles < oppTiles) {
-            m = -(100.0 * oppTiles) / (myTiles + oppTiles);
-        } else {
-            m = 0;
-        }
-        // balanceig final
-        ret = (int) (10*p + 900*c + 78*m + 74* f+ 150*d + 260*xox + 200*pi);
-        return ret ;
+    }
+
+    /**
+     * Funció que retorna la heuristica de un estat de joc determinat.
+     * @param s l'estat de joc actual.
+     * @return un valor numéric que representa la heuristica del estat de joc actual.
+     */
+    public int heuristica(SearchBoard s) {
+        return avaluador.evaluate(s, myType);
     }
 }
\ No newline at end of file
@@ -8,10 +8,18 @@ import edu.upc.epsevg.prop.othello.IPlayer;
 import edu.upc.epsevg.prop.othello.Move;
 import edu.upc.epsevg.prop.othello.SearchType;
 import java.awt.Point;
-import java.util.ArrayList; 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Jugador MiniMax
+ * Jugador MiniMax. La cerca es reparteix entre els fils d'un ForkJoinPool
+ * seguint Young Brothers Wait.
  * @author Arnau Roca y Henok Argudo
  */
 public class PlayerMiniMax implements IPlayer, IAuto {
@@ -19,8 +27,49 @@ public class PlayerMiniMax implements IPlayer, IAuto {
     private GameStatus s;
     private CellType myType;
     private CellType opponentType;
+    //  heurística del jugador, feta sobre bitboards; a les columnes manté
+    //  el recompte X-O-X que feia la versió amb getPos
+    private static final Evaluation AVALUACIO = new Evaluation(10, 800, 78, 74, 150, 160, 200, false);
+    //  avaluació de les fulles, AVALUACIO si no se'n dona cap altra
+    private final Evaluator avaluador;
+
+    //  profunditat mínima que ha de quedar per repartir els germans entre fils
+    private static final int PROF_MIN_SPLIT = 3;
+    //  profunditat de la cerca
+    private int profmax = 8;
+    //  comptadors de la jugada, compartits per tots els fils del pool
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder avaluacions = new LongAdder();
+    private final AtomicLongArray tallsPerIndex = new AtomicLongArray(SearchStats.INDEXS);
+    //  estadístiques de l'última jugada
+    private SearchStats stats = new SearchStats();
+    private final ForkJoinPool pool;
 
     public PlayerMiniMax() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param numThreads nombre de fils que fa servir la cerca en paral·lel.
+     */
+    public PlayerMiniMax(int numThreads) {
+        this(numThreads, AVALUACIO);
+    }
+
+    /**
+     * @param numThreads nombre de fils que fa servir la cerca en paral·lel.
+     * @param avaluador avaluació de les fulles, per exemple un PatternEval.
+     */
+    public PlayerMiniMax(int numThreads, Evaluator avaluador) {
+        pool = new ForkJoinPool(Math.max(1, numThreads));
+        this.avaluador = avaluador;
+    }
+
+    /**
+     * @param profmax profunditat de la cerca, per defecte 8.
+     */
+    public void setProfMax(int profmax) {
+        this.profmax = profmax;
     }
 
     @Override
@@ -36,7 +85,7 @@ public class PlayerMiniMax implements IPlayer, IAuto {
     public void timeout() {
         // Nothing to do! I'm so fast, I never timeout 8-)
     }
-    
+
     /**
      * Decideix el moviment del jugador donat un tauler i un color de peça que
      * ha de posar.
@@ -46,36 +95,181 @@ public class PlayerMiniMax implements IPlayer, IAuto {
      */
     @Override
     public Move move(GameStatus s) {
-        ContaNodes = 0;
+        SearchMoveEvent event = new SearchMoveEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        nodes.reset();
+        avaluacions.reset();
+        for (int i = 0; i < SearchStats.INDEXS; i++) {
+            tallsPerIndex.set(i, 0);
+        }
         myType = s.getCurrentPlayer();
         opponentType = CellType.opposite(myType);
-        Point mov = triaPosició(s, 8);
-        return new Move( mov, this.ContaNodes, 0, SearchType.MINIMAX);
+        SearchBoard tauler = new SearchBoard(BitBoard.fromStatus(new MyGameStatus(s)));
+        Point mov = pool.invoke(ForkJoinTask.adapt(() -> triaPosició(tauler, profmax)));
+        ContaNodes = (int) nodes.sum();
+
+        stats = new SearchStats();
+        stats.profunditat = profmax;
+        stats.buits = tauler.getEmptyCount();
+        stats.nodes = ContaNodes;
+        stats.avaluacions = avaluacions.sum();
+        for (int i = 0; i < SearchStats.INDEXS; i++) {
+            stats.tallsPerIndex[i] = tallsPerIndex.get(i);
+        }
+        stats.ms = (System.nanoTime() - t0) / 1_000_000;
+        event.commit(getName(), stats);
+        return new Move( mov, this.ContaNodes, profmax, SearchType.MINIMAX);
     }
-    
+
+    /**
+     * @return les estadístiques de la cerca de l'última jugada; no té taula
+     * de transposició ni IDS, i per tant aquests camps queden a zero.
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Node on s'han repartit els germans entre fils (Young Brothers Wait).
+     * Guarda la finestra alpha-beta que comparteixen les tasques; com que
+     * els valors són absoluts, la finestra efectiva d'un node és la
+     * intersecció de les de tots els seus avantpassats, i quan queda buida
+     * les tasques que encara corren per sota ja no serveixen de res.
+     */
+    private static class SplitPoint {
+        final SplitPoint parent;
+        final boolean max;
+        //  a l'arrel volem el valor exacte dels empats amb el millor fill,
+        //  per això allà la cota queda un punt per sota
+        final int marge;
+        final AtomicInteger alpha, beta;
+
+        SplitPoint(SplitPoint parent, boolean max, int alpha, int beta, int marge) {
+            this.parent = parent;
+            this.max = max;
+            this.marge = marge;
+            this.alpha = new AtomicInteger(alpha);
+            this.beta = new AtomicInteger(beta);
+        }
+
+        /**
+         * Actualitza la finestra amb el valor d'un fill acabat.
+         */
+        void update(int eval) {
+            if (max) {
+                alpha.accumulateAndGet(eval - marge, Math::max);
+            } else {
+                beta.accumulateAndGet(eval, Math::min);
+            }
+        }
+
+        int getAlpha() {
+            int a = Integer.MIN_VALUE;
+            for (SplitPoint sp = this; sp != null; sp = sp.parent) {
+                a = Math.max(a, sp.alpha.get());
+            }
+            return a;
+        }
+
+        int getBeta() {
+            int b = Integer.MAX_VALUE;
+            for (SplitPoint sp = this; sp != null; sp = sp.parent) {
+                b = Math.min(b, sp.beta.get());
+            }
+            return b;
+        }
+    }
+
+    /**
+     * Cerca d'un germà petit en un altre fil: cada tasca té la seva còpia del
+     * tauler amb el moviment ja fet.
+     */
+    private class ChildTask extends RecursiveTask<Integer> {
+        final SearchBoard fill;
+        final int sq;
+        final int depth;
+        final SplitPoint sp;
+
+        ChildTask(SearchBoard s, int sq, int depth, SplitPoint sp) {
+            this.fill = new SearchBoard(s);
+            this.fill.makeMove(sq);
+            this.sq = sq;
+            this.depth = depth;
+            this.sp = sp;
+        }
+
+        @Override
+        protected Integer compute() {
+            int eval = sp.max
+                    ? minValor(fill, depth, Integer.MAX_VALUE, Integer.MIN_VALUE, sp)
+                    : maxValor(fill, depth, Integer.MAX_VALUE, Integer.MIN_VALUE, sp);
+            sp.update(eval);
+            return eval;
+        }
+    }
+
+    /**
+     * Crea les tasques dels germans petits que queden a moves i les
+     * executa en paral·lel.
+     * @return les tasques ja acabades.
+     */
+    private List<ChildTask> cercaGermans(SearchBoard s, long moves, int depth, SplitPoint sp) {
+        List<ChildTask> tasques = new ArrayList<>(Long.bitCount(moves));
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            tasques.add(new ChildTask(s, sq, depth, sp));
+        }
+        ForkJoinTask.invokeAll(tasques);
+        return tasques;
+    }
+
     /**
      * Funció que retorna el millor moviment per a un estat de joc
-     * i una profunditat determinada.
+     * i una profunditat determinada. El primer fill es cerca sol i la
+     * resta en paral·lel amb la finestra que ha deixat.
      * @param s l'estat de joc actual
      * @param depth la màxima profunditat de la cerca minimax
      * @return un Point que representa la posició del moviment
      */
-    Point triaPosició(GameStatus s, int depth){
-        int maxEval = Integer.MIN_VALUE;
-        Point bestMove = new Point();
-        ArrayList<Point> moves = s.getMoves();
-        for (int i = 0; i < moves.size(); i++) {
-            GameStatus fill = new GameStatus(s);
-            fill.movePiece(moves.get(i));
-            int eval = minValor(fill, depth-1, Integer.MAX_VALUE, Integer.MIN_VALUE);
+    Point triaPosició(SearchBoard s, int depth){
+        long moves = s.getMoves();
+        if(moves == 0){
+            return new Point();
+        }
+        int sq = Long.numberOfTrailingZeros(moves);
+        moves &= moves - 1;
+        long flips = s.makeMove(sq);
+        int maxEval = minValor(s, depth-1, Integer.MAX_VALUE, Integer.MIN_VALUE, null);
+        s.unmakeMove(sq, flips);
+        Point bestMove = BitBoard.toPoint(sq);
+
+        SplitPoint sp = new SplitPoint(null, true, maxEval - 1, Integer.MAX_VALUE, 1);
+        for (ChildTask t : cercaGermans(s, moves, depth-1, sp)) {
+            int eval = t.join();
             if(maxEval < eval){
                 maxEval = eval;
-                bestMove = moves.get(i);
+                bestMove = BitBoard.toPoint(t.sq);
             }
         }
         return bestMove;
     }
 
+    /**
+     * Valor d'un estat terminal: guanyem o guanya el contrincant.
+     * @param s l'estat de joc actual
+     * @return la valoració de la partida acabada
+     */
+    private int valorFinal(SearchBoard s){
+        //  Guanyem nosaltres
+        if(s.getScore(myType) > s.getScore(opponentType))
+            return 1000000;
+        //  Guanya el contrincant
+        else
+            return -1000000;
+    }
+
     /**
      * Funció que utilitza l'algorisme minimax amb poda alpha-beta
      * per obtenir el valor amb mínima heurística.
@@ -83,35 +277,60 @@ public class PlayerMiniMax implements IPlayer, IAuto {
      * @param depth la màxima profunditat de la cerca minimax
      * @param beta valor beta
      * @param alpha valor alpha
+     * @param sp node repartit més proper per sobre, o null
      * @return el valor heurístic més petit possible a partir del estat actual
      */
-    int minValor(GameStatus s, int depth, int beta, int alpha){
-        //  ha guanyat algu
-        if(s.checkGameOver()){
-            //  Guanyem nosaltres
-            if(myType == s.GetWinner())
-                return 1000000;
-            //  Guanya el contrincant
-            else
-                return -1000000;
+    int minValor(SearchBoard s, int depth, int beta, int alpha, SplitPoint sp){
+        nodes.increment();
+        long moves = s.getMoves();
+        if(moves == 0){
+            //  ha guanyat algu
+            if(s.getOpponentMoves() == 0){
+                return valorFinal(s);
+            }
+            //  el contrincant passa i ens torna a tocar
+            s.pass();
+            int eval = maxValor(s, depth, beta, alpha, sp);
+            s.pass();
+            return eval;
         }
-        //  no hi ha moviments possibles o profunditat es 0
-        else if(s.isGameOver() || depth==0){
+        //  profunditat es 0
+        else if(depth==0){
+            avaluacions.increment();
             return heuristica(s);
         }
-        
+        if(sp != null){
+            //  un germà d'un avantpassat pot haver estret la finestra
+            alpha = Math.max(alpha, sp.getAlpha());
+            beta = Math.min(beta, sp.getBeta());
+            if(alpha>=beta){
+                return alpha;
+            }
+        }
+
         int minEval = Integer.MAX_VALUE;
-        ArrayList<Point> moves = s.getMoves();
-        for (int i = 0; i < moves.size(); i++) {
-            GameStatus fill = new GameStatus(s);
-            fill.movePiece(moves.get(i));
-             
-            minEval = Math.min(minEval, maxValor(fill, depth-1, beta, alpha));
+        //  el germà gran sempre es cerca abans de repartir la resta
+        boolean germaGran = true;
+        for (int i = 0; moves != 0; i++) {
+            if(!germaGran && depth >= PROF_MIN_SPLIT){
+                SplitPoint fills = new SplitPoint(sp, false, alpha, beta, 0);
+                for (ChildTask t : cercaGermans(s, moves, depth-1, fills)) {
+                    minEval = Math.min(minEval, t.join());
+                }
+                break;
+            }
+            germaGran = false;
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long flips = s.makeMove(sq);
+            minEval = Math.min(minEval, maxValor(s, depth-1, beta, alpha, sp));
+            s.unmakeMove(sq, flips);
             beta = Math.min(beta, minEval);
             if(alpha>=beta){
+                tallsPerIndex.incrementAndGet(Math.min(i, SearchStats.INDEXS - 1));
                 break;
             }
-            
+
         }
         return minEval;
     }
@@ -123,340 +342,69 @@ public class PlayerMiniMax implements IPlayer, IAuto {
      * @param depth la màxima profunditat de la cerca minimax
      * @param beta valor beta
      * @param alpha valor alpha
+     * @param sp node repartit més proper per sobre, o null
      * @return el valor heurístic més gran possible a partir del estat actual
      */
-    int maxValor(GameStatus s, int depth, int beta, int alpha){
-        //  ha guanyat algu
-        if(s.checkGameOver()){
-            //  Guanyem nosaltres
-            if(myType == s.GetWinner())
-                return 1000000;
-            //  Guanya el contrincant
-            else
-                return -1000000;
+    int maxValor(SearchBoard s, int depth, int beta, int alpha, SplitPoint sp){
+        nodes.increment();
+        long moves = s.getMoves();
+        if(moves == 0){
+            //  ha guanyat algu
+            if(s.getOpponentMoves() == 0){
+                return valorFinal(s);
+            }
+            //  no podem tirar: passem i li toca al contrincant
+            s.pass();
+            int eval = minValor(s, depth, beta, alpha, sp);
+            s.pass();
+            return eval;
         }
-        //  no hi ha moviments possibles o profunditat es 0
-        else if(s.isGameOver() || depth==0){
+        //  profunditat es 0
+        else if(depth==0){
+            avaluacions.increment();
             return heuristica(s);
         }
-        
+        if(sp != null){
+            //  un germà d'un avantpassat pot haver estret la finestra
+            alpha = Math.max(alpha, sp.getAlpha());
+            beta = Math.min(beta, sp.getBeta());
+            if(alpha>=beta){
+                return beta;
+            }
+        }
+
         int maxEval = Integer.MIN_VALUE+1;
-        ArrayList<Point> moves = s.getMoves();
-        for (int i = 0; i < moves.size(); i++) {
-            GameStatus fill = new GameStatus(s);
-            fill.movePiece(moves.get(i));
-            maxEval = Math.max(maxEval, minValor(fill, depth-1, beta, alpha));
+        //  el germà gran sempre es cerca abans de repartir la resta
+        boolean germaGran = true;
+        for (int i = 0; moves != 0; i++) {
+            if(!germaGran && depth >= PROF_MIN_SPLIT){
+                SplitPoint fills = new SplitPoint(sp, true, alpha, beta, 0);
+                for (ChildTask t : cercaGermans(s, moves, depth-1, fills)) {
+                    maxEval = Math.max(maxEval, t.join());
+                }
+                break;
+            }
+            germaGran = false;
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long flips = s.makeMove(sq);
+            maxEval = Math.max(maxEval, minValor(s, depth-1, beta, alpha, sp));
+            s.unmakeMove(sq, flips);
             alpha = Math.max(alpha, maxEval);
             if(alpha>=beta){
+                tallsPerIndex.incrementAndGet(Math.min(i, SearchStats.INDEXS - 1));
                 break;
             }
         }
         return maxEval;
     }
-    
+
     /**
      * Funció que retorna la heuristica de un estat de joc determinat.
      * @param s l'estat de joc actual.
      * @return un valor numéric que representa la heuristica del estat de joc actual.
      */
-    public int heuristica(GameStatus s) {
-        int myTiles = 0, oppTiles = 0, myFrontTiles = 0, oppFrontTiles = 0, ret=0, cc=0;
-        double p = 0, c = 0, m = 0, f = 0, d = 0, pi=0, xox=0;
-
-        int[] X1 = {-1, -1, 0, 1, 1, 1, 0, -1};
-        int[] Y1 = {0, 1, 1, 1, 0, -1, -1, -1};
-        int[][] V = {
-            {20, -15, 8, 8, 8, 8, -15, 20},
-            {-15, -17, -4, 1, 1, -4, -17, -15},
-            {8, -4, 2, 2, 2, 2, -4, 8},
-            {8, 1, 2, -3, -3, 2, 1, 8},
-            {8, 1, 2, -3, -3, 2, 1, 8},
-            {8, -4, 2, 2, 2, 2, -4, 11},
-            {-15, -17, -4, 1, 1, -4, -17, -15},
-            {20, -15, 8, 8, 8, 11, -15, 20}
-                
-                
-        };
-        //  mirem si fem una piramide al corner 0,0 (cel·les ocupades que son immobils)
-        int[] X2 = {0,1,0,2,0,1,2,1,3,0};
-        int[] Y2 = {0,0,1,0,2,1,1,2,0,3};
-        int x =0, y=0;
-        myTiles=0;oppTiles=0;
-        if(s.getPos(x,y)==CellType.PLAYER1 || s.getPos(x,y)==CellType.PLAYER2){
-            CellType mom= s.getPos(x,y);
-            for(int i=0; i<10; i++){
-                int xm=x+X2[i];
-                int ym=y+Y2[i];
-                V[xm][ym]=0;
-                if(s.getPos(xm,ym)==mom){
-                    if(mom == myType){
-                        myTiles+=1;
-                    }
-                    else{
-                        oppTiles+=1;
-                    }
-                }
-            }
-        }
-        //  mirem si fem una piramide al corner 0,7 (cel·les ocupades que son immobils)
-        x =0; y=s.getSize()-1;
-        if(s.getPos(x,y)==CellType.PLAYER1 || s.getPos(x,y)==CellType.PLAYER2){
-            
-            CellType mom= s.getPos(x,y);
-            for(int i=0; i<10; i++){
-                int xm=x+X2[i];
-                int ym=y-Y2[i];
-                V[xm][ym]=0;
-                if(s.getPos(xm,ym)==mom){
-                    if(mom == myType){
-                        myTiles+=1;
-                    }
-                    else{
-                        oppTiles+=1;
-                    }
-                }
-            }
-        }
-        
-        //  mirem si fem una piramide al corner 7,0 (cel·les ocupades que son immobils)
-        x =s.getSize()-1; y=0;
-        if(s.getPos(x,y)==CellType.PLAYER1 || s.getPos(x,y)==CellType.PLAYER2){
-            CellType mom= s.getPos(x,y);
-            for(int i=0; i<10; i++){
-                int xm=x-X2[i];
-                int ym=y+Y2[i];
-                V[xm][ym]=0;
-                if(s.getPos(xm,ym)==mom){
-                    if(mom == myType){
-                        myTiles+=1;
-                    }
-                    else{
-                        oppTiles+=1;
-                    }
-                }
-            }
-        }
-        //  mirem si fem una piramide al corner 7,7 (cel·les ocupades que son immobils)
-        x =s.getSize()-1; y=s.getSize()-1;
-        if(s.getPos(x,y)==CellType.PLAYER1 || s.getPos(x,y)==CellType.PLAYER2){
-            CellType mom= s.getPos(x,y);
-            for(int i=0; i<10; i++){
-                int xm=x-X2[i];
-                int ym=y-Y2[i];
-                V[xm][ym]=0;
-                if(s.getPos(xm,ym)==mom){
-                    if(mom == myType){
-                        myTiles+=1;
-                    }
-                    else{
-                        oppTiles+=1;
-                    }
-                    
-                }
-            }
-        }
-        if (myTiles > oppTiles) {
-            pi = (100.0 * myTiles) / (myTiles + oppTiles);
-        } else if (myTiles < oppTiles) {
-            pi = -(100.0 * oppTiles) / (myTiles + oppTiles);
-        } else {
-            pi = 0;
-        }
-        
-        //  mirem cas X0X nostre en les files del cantó (de 0,0 a 7,0) i (0,7 a 7,7)
-        myTiles=0;oppTiles=0;
-        x=0;y=0;
-        for(int i=0; i<s.getSize()-3; ++i){
-            int xm=x+i;
-            if ((s.getPos(xm,y) == opponentType)){
-                if(s.getPos(xm+2,y) == opponentType && s.getPos(xm+1,y)==myType){
-                    myTiles += 1;
-                }
-                y=s.getSize()-1;
-                if(s.getPos(xm+2,y) == opponentType && s.getPos(xm+1,y)==myType){
-                    myTiles += 1;
-                }
-            }
-            if ((s.getPos(xm,y) == myType)){
-                if(s.getPos(xm+2,y) == myType && s.getPos(xm+1,y)==opponentType){
-                    oppTiles += 1;
-                }
-                y=s.getSize()-1;
-                if(s.getPos(xm+2,y) == myType && s.getPos(xm+1,y)==opponentType){
-                    oppTiles += 1;
-                }
-            }
-        }
-        //  mirem cas X0X nostre en les columnes del cantó (de 0,0 a 0,7) i (7,0 a 7,7)
-        x=0;y=0;
-        for(int i=0; i<s.getSize()-3; ++i){
-            int ym=y+i;
-            if ((s.getPos(x,ym) == opponentType)){
-                if(s.getPos(x,ym+2) == opponentType && s.getPos(x,ym+1)==myType){
-                    myTiles += 1;
-                }
-                x=s.getSize()-1;
-                if(s.getPos(x,ym+2) == opponentType && s.getPos(x,ym+2)==myType){
-                    myTiles += 1;
-                }
-            }
-            if ((s.getPos(x,ym) == myType)){
-                if(s.getPos(x,ym+2) == myType && s.getPos(x,ym+1)==opponentType){
-                    oppTiles += 1;
-                }
-                x=s.getSize()-1;
-                if(s.getPos(x,ym+2) == myType && s.getPos(x,ym+1)==opponentType){
-                    oppTiles += 1;
-                }
-            }
-        }
-        if (myTiles > oppTiles) {
-            xox = (100.0 * myTiles) / (myTiles + oppTiles);
-        } else if (myTiles < oppTiles) {
-            xox = -(100.0 * oppTiles) / (myTiles + oppTiles);
-        } else {
-            xox = 0;
-        }
-        //  mirem la taula de valors i les fitxer frontera (fitxes que tenen al
-        //  costat fitxes buides) mirar documentació per saber que es una fitxa frontera.
-        for (int i = 0; i < s.getSize(); i++) {
-            for (int j = 0; j < s.getSize(); j++) {
-                if (s.getPos(i,j) == myType) {
-                    d += V[i][j];
-
-                } else if (s.getPos(i,j) == opponentType) {
-                    d -= V[i][j];
-                }
-                if (s.getPos(i,j) == opponentType || s.getPos(i,j) == myType) {
-                    for (int k = 0; k < 8; k++) {
-                        x = i + X1[k];
-                        y = j + Y1[k];
-                        if (x >= 0 && x < 8 && y >= 0 && y < 8 && (s.getPos(x,y) == CellType.EMPTY)) {
-                            if (s.getPos(i,j) == myType){
-                                myFrontTiles++;
-                            } else if(s.getPos(i,j) == opponentType){
-                                oppFrontTiles++;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        //  mirem el nombre de fitxes de cada jugador
-        myTiles=s.getScore(myType);
-        oppTiles=s.getScore(opponentType);
-        if (myTiles > oppTiles) {
-            p = (100.0 * myTiles) / (myTiles + oppTiles);
-        } else if (myTiles < oppTiles) {
-            p = -(100.0 * oppTiles) / (myTiles + oppTiles);
-        } else {
-            p = 0;
-        }
-        //  posem les fitxes frontera en tant per cent
-        if (myFrontTiles > oppFrontTiles) {
-            f = -(100.0 * myFrontTiles) / (myFrontTiles + oppFrontTiles);
-        } else if (myFrontTiles < oppFrontTiles) {
-            f = (100.0 * oppFrontTiles) / (myFrontTiles + oppFrontTiles);
-        } else {
-            f = 0;
-        }
-
-        // mirem l'ocupació dels corners
-        myTiles = oppTiles = 0;
-        if (s.getPos(0,0) == myType) {
-            myTiles += 1;
-        }
-        else if (s.getPos(0,0) == (opponentType)) {
-            oppTiles += 1;
-        }
-        if (s.getPos(0,s.getSize()-1) == myType) {
-            myTiles += 1;
-        }
-        else if (s.getPos(0,s.getSize()-1) == (opponentType)) {
-            oppTiles += 1;
-        }
-        if (s.getPos(s.getSize()-1,0) == myType) {
-            myTiles += 1;
-        }
-        else if (s.getPos(s.getSize()-1,0) == (opponentType)) {
-            oppTiles += 1;
-        }
-        if (s.getPos(s.getSize()-1, s.getSize()-1) == myType) {
-            myTiles += 1;
-        }
-        else if (s.getPos(s.getSize()-1, s.getSize()-1) == (opponentType)) {
-            oppTiles += 1;
-        }
-
-        c = 25 * (myTiles - oppTiles);
-
-        // mirem la mobilitat de cada jugador
-        myTiles = oppTiles = 0;
-        for (int i = 0; i < s.getSize(); i++) {
-            for (int j = 0; j < s.getSize(); j++) {
-                if (s.getPos(i,j) == myType) {
-                    for (int k = 0; k < s.getSize(); k++) {
-                        x = i + X1[k];
-                        y = j + Y1[k];
-                        if (x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize() && s.getPos(x,y) == opponentType) {
-                            x += X1[k];
-                            y += Y1[k];
-                            boolean inside = x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize();
-                            if(inside){
-                                CellType auxCell = s.getPos(x, y);
-                                while(auxCell != CellType.EMPTY && auxCell != myType && inside){
-                                    x += X1[k];
-                                    y += Y1[k];
-                                    inside = x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize();
-                                    if(inside)
-                                        auxCell = s.getPos(x, y);
-                                }
-                                if (auxCell == CellType.EMPTY  && inside) {
-                                    myTiles++;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        for (int i = 0; i < s.getSize(); i++) {
-            for (int j = 0; j < s.getSize(); j++) {
-                if (s.getPos(i,j) == opponentType) {
-                    for (int k = 0; k < s.getSize(); k++) {
-                        x = i + X1[k];
-                        y = j + Y1[k];
-                        if (x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize() && s.getPos(x,y) == myType) {
-                            x += X1[k];
-                            y += Y1[k];
-                            boolean inside = x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize();
-                            if(inside){
-                                CellType auxCell = s.getPos(x, y);
-                                while(auxCell != CellType.EMPTY && auxCell != opponentType  && inside){
-                                    x += X1[k];
-                                    y += Y1[k];
-                                    inside = x >= 0 && x < s.getSize() && y >= 0 && y < s.getSize();
-                                    if(inside)
-                                        auxCell = s.getPos(x, y);
-                                }
-                                if (auxCell == CellType.EMPTY  && inside) {
-                                    oppTiles++;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        if (myTiles > oppTiles) {
-            m = (100.0 * myTiles) / (myTiles + oppTiles);
-        } else if (myTiles < oppTiles) {
-            m = -(100.0 * oppTiles) / (myTiles + oppTiles);
-        } else {
-            m = 0;
-        }
-        // balanceig final
-        ret = (int) (10*p + 800*c + 78*m + 74*f + 150*d + 160*xox + 200*pi);
-        return ret ;
+    public int heuristica(SearchBoard s) {
+        return avaluador.evaluate(s, myType);
     }
 }
\ No newline at end of file
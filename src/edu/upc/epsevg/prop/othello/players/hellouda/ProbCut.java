@@ -0,0 +1,274 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.GameStatus;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Paràmetres de Multi-ProbCut. El valor d'una cerca a profunditat d es
+ * prediu a partir del d'una cerca curta a profunditat d' amb una regressió
+ * lineal, v_d ~ a * v_d' + b, amb un error de desviació típica sigma. Si la
+ * cerca curta diu que, amb un marge de llindar * sigma, la llarga quedarà
+ * fora de la finestra, el node es talla sense fer-la. Hi ha uns paràmetres
+ * per cada fase de la partida (segons les fitxes del tauler) i per cada
+ * profunditat.
+ *
+ * Els valors són sempre des del punt de vista del jugador de l'arrel, i
+ * la regressió s'ajusta amb arrels on mou ell (nodes max). L'avaluació és
+ * antisimètrica, així que als nodes on mou el contrincant (nodes min) la
+ * mateixa regressió, vista des del seu costat, dona v_d ~ a * v_d' - b:
+ * l'ordenada es canvia de signe.
+ *
+ * El main ajusta els paràmetres: cerca posicions de partides a l'atzar amb
+ * IDS i fa la regressió entre els valors de les iteracions d' i d.
+ *
+ * Format del fitxer (big-endian):
+ *   int  MAGIC
+ *   int  VERSIO
+ *   int  nombre de fases
+ *   int  profunditat màxima amb paràmetres
+ *   per cada fase i profunditat de 0 a la màxima:
+ *     int d' (0 si no es talla), float a, float b, float sigma
+ * @author Arnau Roca y Henok Argudo
+ */
+public class ProbCut {
+    public static final int MAGIC = 0x4F545043;
+    public static final int VERSIO = 1;
+    static final int CAPCALERA = 4 * Integer.BYTES;
+    static final int REGISTRE = Integer.BYTES + 3 * Float.BYTES;
+    //  profunditat mínima on es prova de tallar
+    static final int PROF_MIN = 3;
+    //  nombre de desviacions típiques de marge per defecte
+    public static final double LLINDAR = 1.5;
+    //  mostres mínimes per fer servir una regressió
+    static final int MIN_MOSTRES = 20;
+    //  valors de partida acabada, que no entren a la regressió
+    static final int VALOR_MAX = 1_000_000_000;
+
+    final int fases;
+    final int profMax;
+    final int[][] prima;
+    final float[][] a;
+    final float[][] b;
+    final float[][] sigma;
+
+    ProbCut(int fases, int profMax) {
+        this.fases = fases;
+        this.profMax = profMax;
+        prima = new int[fases][profMax + 1];
+        a = new float[fases][profMax + 1];
+        b = new float[fases][profMax + 1];
+        sigma = new float[fases][profMax + 1];
+    }
+
+    /**
+     * @return la profunditat de la cerca curta per a una de profunditat d;
+     * es manté la paritat perquè l'avaluació té biaix segons qui mou.
+     */
+    static int profPrima(int d) {
+        return d >= 7 ? d - 4 : d - 2;
+    }
+
+    /**
+     * @return la fase d'un tauler amb aquestes fitxes.
+     */
+    int fase(int fitxes) {
+        return Math.min(fases - 1, Math.max(0, (fitxes - 4) * fases / 60));
+    }
+
+    /**
+     * @return la profunditat de la cerca curta, o 0 si a aquesta fase i
+     * profunditat no es talla.
+     */
+    int prima(int fase, int depth) {
+        return depth > profMax ? 0 : prima[fase][depth];
+    }
+
+    /**
+     * @return l'ordenada de la regressió al node: b als nodes max i -b als
+     * nodes min.
+     */
+    private double ordenada(int fase, int depth, boolean max) {
+        return max ? b[fase][depth] : -b[fase][depth];
+    }
+
+    /**
+     * @param max true si al node mou el jugador de l'arrel.
+     * @return el valor mínim de la cerca curta perquè la llarga arribi a
+     * beta amb un marge de llindar desviacions.
+     */
+    long cotaSuperior(int fase, int depth, int beta, double llindar, boolean max) {
+        return (long) Math.ceil((beta + llindar * sigma[fase][depth] - ordenada(fase, depth, max)) / a[fase][depth]);
+    }
+
+    /**
+     * @param max true si al node mou el jugador de l'arrel.
+     * @return el valor màxim de la cerca curta perquè la llarga no passi
+     * d'alpha amb un marge de llindar desviacions.
+     */
+    long cotaInferior(int fase, int depth, int alpha, double llindar, boolean max) {
+        return (long) Math.floor((alpha - llindar * sigma[fase][depth] - ordenada(fase, depth, max)) / a[fase][depth]);
+    }
+
+    /**
+     * Llegeix uns paràmetres.
+     * @param fitxer el fitxer escrit per save.
+     * @return els paràmetres.
+     * @throws IOException si no es pot llegir o el format no és correcte.
+     */
+    public static ProbCut load(Path fitxer) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(fitxer));
+        if (buf.remaining() < CAPCALERA || buf.getInt() != MAGIC || buf.getInt() != VERSIO) {
+            throw new IOException("Format de ProbCut desconegut: " + fitxer);
+        }
+        int fases = buf.getInt(), profMax = buf.getInt();
+        if (fases <= 0 || profMax < 0 || buf.remaining() != (long) fases * (profMax + 1) * REGISTRE) {
+            throw new IOException("Mida de ProbCut incorrecta: " + fitxer);
+        }
+        ProbCut pc = new ProbCut(fases, profMax);
+        for (int f = 0; f < fases; f++) {
+            for (int d = 0; d <= profMax; d++) {
+                pc.prima[f][d] = buf.getInt();
+                pc.a[f][d] = buf.getFloat();
+                pc.b[f][d] = buf.getFloat();
+                pc.sigma[f][d] = buf.getFloat();
+                if (pc.prima[f][d] != 0 && !(pc.a[f][d] > 0)) {
+                    throw new IOException("Pendent no positiu a " + fitxer);
+                }
+            }
+        }
+        return pc;
+    }
+
+    /**
+     * Escriu els paràmetres.
+     * @param fitxer el fitxer a escriure.
+     * @throws IOException si no es pot escriure.
+     */
+    public void save(Path fitxer) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(CAPCALERA + fases * (profMax + 1) * REGISTRE);
+        buf.putInt(MAGIC).putInt(VERSIO).putInt(fases).putInt(profMax);
+        for (int f = 0; f < fases; f++) {
+            for (int d = 0; d <= profMax; d++) {
+                buf.putInt(prima[f][d]).putFloat(a[f][d]).putFloat(b[f][d]).putFloat(sigma[f][d]);
+            }
+        }
+        Files.write(fitxer, buf.array());
+    }
+
+    /**
+     * Sumes per a la regressió d'una fase i profunditat.
+     */
+    static class Regressio {
+        long n;
+        double sx, sy, sxx, sxy, syy;
+
+        void afegeix(double x, double y) {
+            n++;
+            sx += x;
+            sy += y;
+            sxx += x * x;
+            sxy += x * y;
+            syy += y * y;
+        }
+
+        double pendent() {
+            return (n * sxy - sx * sy) / (n * sxx - sx * sx);
+        }
+
+        double ordenada() {
+            return (sy - pendent() * sx) / n;
+        }
+
+        /**
+         * @return la desviació típica dels residus.
+         */
+        double sigma() {
+            double a = pendent(), b = ordenada();
+            double residus = syy - 2 * a * sxy - 2 * b * sy + a * a * sxx + 2 * a * b * sx + n * b * b;
+            return Math.sqrt(Math.max(0, residus) / Math.max(1, n - 2));
+        }
+    }
+
+    /**
+     * Ajusta els paràmetres cercant posicions de partides a l'atzar.
+     *
+     * Ús: ProbCut fitxer [posicions] [profMax] [fases] [llavor]
+     */
+    public static void main(String[] args) throws IOException {
+        Path fitxer = Path.of(args[0]);
+        int posicions = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int profMax = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int fases = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        Random r = new Random(args.length > 4 ? Long.parseLong(args[4]) : 1);
+
+        ProbCut pc = new ProbCut(fases, profMax);
+        Regressio[][] regressions = new Regressio[fases][profMax + 1];
+        for (Regressio[] fila : regressions) {
+            for (int d = 0; d <= profMax; d++) {
+                fila[d] = new Regressio();
+            }
+        }
+        PlayerID jugador = new PlayerID(256);
+        jugador.setAlgorisme(PlayerID.Algorisme.ALPHABETA);
+        jugador.setProfMax(profMax + 1);
+        jugador.setEndgameEmpties(0);
+        int fetes = 0;
+        while (fetes < posicions) {
+            //  jugades a l'atzar fins a un nombre de fitxes uniforme entre
+            //  8 i 60 - profMax, perquè la cerca no arribi al final
+            GameStatus s = new GameStatus();
+            int fitxes = 8 + r.nextInt(Math.max(1, 53 - profMax));
+            //  cada jugada posa una fitxa; si cal passar, s'atura
+            for (int n = 4; n < fitxes && !s.getMoves().isEmpty(); n++) {
+                List<Point> moves = s.getMoves();
+                s.movePiece(moves.get(r.nextInt(moves.size())));
+            }
+            if (s.getMoves().isEmpty()) {
+                continue;
+            }
+            int f = pc.fase(64 - BitBoard.fromStatus(new MyGameStatus(s)).getEmptyCount());
+            jugador.move(new GameStatus(s));
+            int[] valors = new int[profMax + 1];
+            boolean[] complet = new boolean[profMax + 1];
+            for (SearchStats.Iteracio it : jugador.getStats().getIteracions()) {
+                if (it.completa && it.profunditat <= profMax) {
+                    valors[it.profunditat] = it.valor;
+                    complet[it.profunditat] = Math.abs((long) it.valor) < VALOR_MAX;
+                }
+            }
+            for (int d = PROF_MIN; d <= profMax; d++) {
+                int dp = profPrima(d);
+                if (complet[d] && complet[dp]) {
+                    regressions[f][d].afegeix(valors[dp], valors[d]);
+                }
+            }
+            fetes++;
+            if (fetes % 50 == 0) {
+                System.out.println(fetes + " posicions");
+            }
+        }
+
+        System.out.printf("%-5s %-5s %-5s %8s %10s %10s %10s%n", "fase", "d", "d'", "mostres", "a", "b", "sigma");
+        for (int f = 0; f < fases; f++) {
+            for (int d = PROF_MIN; d <= profMax; d++) {
+                Regressio reg = regressions[f][d];
+                if (reg.n < MIN_MOSTRES || !(reg.pendent() > 0)) {
+                    continue;
+                }
+                pc.prima[f][d] = profPrima(d);
+                pc.a[f][d] = (float) reg.pendent();
+                pc.b[f][d] = (float) reg.ordenada();
+                pc.sigma[f][d] = (float) reg.sigma();
+                System.out.printf("%-5d %-5d %-5d %8d %10.4f %10.1f %10.1f%n", f, d, pc.prima[f][d], reg.n,
+                        pc.a[f][d], pc.b[f][d], pc.sigma[f][d]);
+            }
+        }
+        pc.save(fitxer);
+    }
+}
@@ -0,0 +1,123 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+/**
+ * Tauler de la cerca: a més dels bitboards manté, per cada color, la suma de
+ * pesos de les seves fitxes, el nombre de fitxes, de corners i de parells
+ * fitxa-casella buida veïna (frontera). makeMove els actualitza amb les
+ * fitxes girades i unmakeMove els recupera d'una pila, de manera que a les
+ * fulles la heurística només ha de calcular la resta de termes.
+ * Els índexs de color són els de BitBoard.colorIndex (0 = PLAYER1, 1 = PLAYER2).
+ * @author Arnau Roca y Henok Argudo
+ */
+public class SearchBoard extends BitBoard {
+    //  caselles veïnes de cada casella
+    static final long[] NEIGHBOURS = new long[64];
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            for (int dir = 0; dir < 8; dir++) {
+                NEIGHBOURS[sq] |= shift(1L << sq, dir);
+            }
+        }
+    }
+
+    //  valors que es guarden a la pila per cada moviment
+    private static final int ACUMULADORS = 8;
+
+    final int[] pesos = new int[2];
+    final int[] fitxes = new int[2];
+    final int[] corners = new int[2];
+    final int[] frontera = new int[2];
+
+    private final int[] pila = new int[64 * ACUMULADORS];
+    private int ply;
+
+    public SearchBoard(BitBoard b) {
+        super(b);
+        recalcula();
+    }
+
+    public SearchBoard(SearchBoard b) {
+        super(b);
+        System.arraycopy(b.pesos, 0, pesos, 0, 2);
+        System.arraycopy(b.fitxes, 0, fitxes, 0, 2);
+        System.arraycopy(b.corners, 0, corners, 0, 2);
+        System.arraycopy(b.frontera, 0, frontera, 0, 2);
+    }
+
+    /**
+     * Calcula els acumuladors des de zero.
+     */
+    private void recalcula() {
+        long empty = ~(player | opponent);
+        int c = colorIndex(currentPlayer);
+        long[] discs = new long[2];
+        discs[c] = player;
+        discs[1 - c] = opponent;
+        for (int k = 0; k < 2; k++) {
+            pesos[k] = 0;
+            for (long b = discs[k]; b != 0; b &= b - 1) {
+                pesos[k] += Evaluation.PES[Long.numberOfTrailingZeros(b)];
+            }
+            fitxes[k] = Long.bitCount(discs[k]);
+            corners[k] = Long.bitCount(discs[k] & Evaluation.CORNERS);
+            frontera[k] = Evaluation.frontera(discs[k], empty);
+        }
+    }
+
+    @Override
+    public long makeMove(int sq) {
+        int base = ply * ACUMULADORS;
+        pila[base] = pesos[0];
+        pila[base + 1] = pesos[1];
+        pila[base + 2] = fitxes[0];
+        pila[base + 3] = fitxes[1];
+        pila[base + 4] = corners[0];
+        pila[base + 5] = corners[1];
+        pila[base + 6] = frontera[0];
+        pila[base + 7] = frontera[1];
+        ply++;
+
+        int c = colorIndex(currentPlayer), o = 1 - c;
+        long empty = ~(player | opponent);
+        long flips = super.makeMove(sq);
+
+        //  les fitxes girades passen al jugador que ha mogut amb el seu pes
+        //  i les seves caselles buides veïnes
+        int pesGirat = 0, fronteraGirada = 0;
+        for (long b = flips; b != 0; b &= b - 1) {
+            int f = Long.numberOfTrailingZeros(b);
+            pesGirat += Evaluation.PES[f];
+            fronteraGirada += Long.bitCount(NEIGHBOURS[f] & empty);
+        }
+        int girades = Long.bitCount(flips);
+        pesos[c] += Evaluation.PES[sq] + pesGirat;
+        pesos[o] -= pesGirat;
+        fitxes[c] += girades + 1;
+        fitxes[o] -= girades;
+        if ((Evaluation.CORNERS & (1L << sq)) != 0) {
+            corners[c]++;
+        }
+        //  la fitxa nova aporta les seves veïnes buides i cada fitxa veïna
+        //  perd una casella buida
+        long veines = NEIGHBOURS[sq];
+        frontera[c] += fronteraGirada + Long.bitCount(veines & empty)
+                - Long.bitCount(veines & opponent);
+        frontera[o] -= fronteraGirada + Long.bitCount(veines & player);
+        return flips;
+    }
+
+    @Override
+    public void unmakeMove(int sq, long flips) {
+        super.unmakeMove(sq, flips);
+        ply--;
+        int base = ply * ACUMULADORS;
+        pesos[0] = pila[base];
+        pesos[1] = pila[base + 1];
+        fitxes[0] = pila[base + 2];
+        fitxes[1] = pila[base + 3];
+        corners[0] = pila[base + 4];
+        corners[1] = pila[base + 5];
+        frontera[0] = pila[base + 6];
+        frontera[1] = pila[base + 7];
+    }
+}
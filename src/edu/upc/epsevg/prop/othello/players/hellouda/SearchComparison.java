@@ -0,0 +1,82 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.GameStatus;
+import edu.upc.epsevg.prop.othello.Move;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compara els algorismes de cerca de PlayerID sobre un conjunt fix de
+ * posicions: per cada algorisme, nodes i temps per arribar a la mateixa
+ * profunditat, i en quantes posicions tria un moviment diferent del
+ * d'alpha-beta.
+ *
+ * Ús: SearchComparison [profunditat] [posicions] [llavor]
+ * @author Arnau Roca y Henok Argudo
+ */
+public class SearchComparison {
+
+    /**
+     * Genera posicions de mig joc jugant a l'atzar des de l'inici.
+     */
+    static List<GameStatus> posicions(int quantes, long llavor) {
+        Random r = new Random(llavor);
+        List<GameStatus> posicions = new ArrayList<>();
+        while (posicions.size() < quantes) {
+            GameStatus s = new GameStatus();
+            int jugades = 12 + r.nextInt(24);
+            for (int j = 0; j < jugades && !s.isGameOver(); j++) {
+                List<Point> moves = s.getMoves();
+                s.movePiece(moves.isEmpty() ? null : moves.get(r.nextInt(moves.size())));
+            }
+            if (!s.isGameOver() && !s.getMoves().isEmpty()) {
+                posicions.add(s);
+            }
+        }
+        return posicions;
+    }
+
+    public static void main(String[] args) {
+        int profunditat = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        int quantes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long llavor = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        List<GameStatus> posicions = posicions(quantes, llavor);
+
+        //  escalfament perquè el JIT no perjudiqui el primer algorisme
+        for (PlayerID.Algorisme algorisme : PlayerID.Algorisme.values()) {
+            PlayerID jugador = new PlayerID(64);
+            jugador.setAlgorisme(algorisme);
+            jugador.setProfMax(Math.max(2, profunditat - 1));
+            jugador.setEndgameEmpties(0);
+            for (GameStatus s : posicions) {
+                jugador.move(new GameStatus(s));
+            }
+        }
+
+        Point[] referencia = new Point[posicions.size()];
+        System.out.printf("%-10s %14s %10s %10s%n", "algorisme", "nodes", "ms", "diferents");
+        for (PlayerID.Algorisme algorisme : PlayerID.Algorisme.values()) {
+            long nodes = 0, ms = 0;
+            int diferents = 0;
+            for (int i = 0; i < posicions.size(); i++) {
+                //  cada posició amb una taula buida perquè no s'ajudin entre elles
+                PlayerID jugador = new PlayerID(64);
+                jugador.setAlgorisme(algorisme);
+                jugador.setProfMax(profunditat + 1);
+                jugador.setEndgameEmpties(0);
+                long t0 = System.nanoTime();
+                Move m = jugador.move(new GameStatus(posicions.get(i)));
+                ms += (System.nanoTime() - t0) / 1_000_000;
+                nodes += m.getNumerOfNodesExplored();
+                if (algorisme == PlayerID.Algorisme.ALPHABETA) {
+                    referencia[i] = m.getTo();
+                } else if (!m.getTo().equals(referencia[i])) {
+                    diferents++;
+                }
+            }
+            System.out.printf("%-10s %14d %10d %10d%n", algorisme, nodes, ms, diferents);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Esdeveniment de JFR per cada iteració de l'IDS del fil principal; la
+ * durada de l'esdeveniment és la de la iteració.
+ * @author Arnau Roca y Henok Argudo
+ */
+@Name("hellouda.Iteration")
+@Label("Iteració")
+@Category({"Othello", "Hellouda"})
+@Description("Una iteració de l'IDS de PlayerID")
+@StackTrace(false)
+class SearchIterationEvent extends Event {
+    @Label("Profunditat")
+    int profunditat;
+    @Label("Nodes")
+    long nodes;
+    @Label("Valor")
+    int valor;
+    @Label("Completa")
+    @Description("false si el temps ha tallat la iteració")
+    boolean completa;
+}
@@ -0,0 +1,94 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * Esdeveniment de JFR amb les estadístiques d'una jugada. Per veure'ls en
+ * una partida: java -XX:StartFlightRecording=filename=partida.jfr ... i
+ * després jfr print --events hellouda.Move partida.jfr
+ * @author Arnau Roca y Henok Argudo
+ */
+@Name("hellouda.Move")
+@Label("Jugada")
+@Category({"Othello", "Hellouda"})
+@Description("Estadístiques de la cerca d'una jugada")
+@StackTrace(false)
+class SearchMoveEvent extends Event {
+    @Label("Jugador")
+    String jugador;
+    @Label("Origen")
+    @Description("cerca, pondering, llibre o final")
+    String origen;
+    @Label("Profunditat")
+    int profunditat;
+    @Label("Buits")
+    int buits;
+    @Label("Nodes")
+    long nodes;
+    @Label("Avaluacions")
+    long avaluacions;
+    @Label("Consultes TT")
+    long ttConsultes;
+    @Label("Encerts TT")
+    long ttEncerts;
+    @Label("Talls TT")
+    long ttTalls;
+    @Label("Col·lisions TT")
+    long ttColisions;
+    @Label("Consultes ETC")
+    @Description("Fills buscats a la taula abans d'expandir un node (Enhanced Transposition Cutoff)")
+    long etcConsultes;
+    @Label("Talls ETC")
+    long etcTalls;
+    @Label("Ocupació TT")
+    @Percentage
+    double ttOcupacio;
+    @Label("Obsoletes TT")
+    @Description("Entrades de jugades anteriors que aquesta cerca no ha tocat")
+    @Percentage
+    double ttObsoletes;
+    @Label("Talls")
+    long talls;
+    @Label("Talls ProbCut")
+    @Description("Nodes tallats per Multi-ProbCut amb una cerca curta")
+    long probCutTalls;
+    @Label("Talls per índex")
+    @Description("Talls beta per posició del moviment dins l'ordre")
+    String tallsPerIndex;
+    @Label("Factor de ramificació efectiu")
+    double ebf;
+
+    /**
+     * Copia les estadístiques i envia l'esdeveniment si JFR l'ha demanat.
+     */
+    void commit(String jugador, SearchStats stats) {
+        if (!shouldCommit()) {
+            return;
+        }
+        this.jugador = jugador;
+        origen = stats.origen;
+        profunditat = stats.profunditat;
+        buits = stats.buits;
+        nodes = stats.nodes;
+        avaluacions = stats.avaluacions;
+        ttConsultes = stats.ttConsultes;
+        ttEncerts = stats.ttEncerts;
+        ttTalls = stats.ttTalls;
+        ttColisions = stats.ttColisions;
+        etcConsultes = stats.etcConsultes;
+        etcTalls = stats.etcTalls;
+        ttOcupacio = stats.ttOcupacio;
+        ttObsoletes = stats.ttObsoletes;
+        talls = stats.getTalls();
+        probCutTalls = stats.probCutTalls;
+        tallsPerIndex = stats.tallsPerIndexText();
+        ebf = stats.getEBF();
+        commit();
+    }
+}
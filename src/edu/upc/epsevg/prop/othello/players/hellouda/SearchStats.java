@@ -0,0 +1,255 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Estadístiques de la cerca d'una jugada. Cada fil de cerca omple el seu
+ * objecte sense sincronitzar i al final de la jugada se sumen; el jugador
+ * guarda les de l'última jugada i també les publica com a esdeveniments de
+ * Java Flight Recorder (SearchMoveEvent i SearchIterationEvent).
+ * @author Arnau Roca y Henok Argudo
+ */
+public class SearchStats {
+    //  talls per posició del moviment dins l'ordre; els de més enllà van a l'últim
+    static final int INDEXS = 16;
+
+    /**
+     * Una iteració acabada (o interrompuda) de l'IDS del fil principal.
+     */
+    public static class Iteracio {
+        public final int profunditat;
+        public final long nodes;
+        public final long ms;
+        public final int valor;
+        public final boolean completa;
+
+        Iteracio(int profunditat, long nodes, long ms, int valor, boolean completa) {
+            this.profunditat = profunditat;
+            this.nodes = nodes;
+            this.ms = ms;
+            this.valor = valor;
+            this.completa = completa;
+        }
+
+        @Override
+        public String toString() {
+            return profunditat + ": " + nodes + " nodes, " + ms + " ms" + (completa ? "" : " (interrompuda)");
+        }
+    }
+
+    //  d'on surt el moviment: cerca, pondering, llibre o final
+    String origen = "cerca";
+    int profunditat;
+    int buits;
+    //  valor del moviment per al jugador que mou: heurística a la cerca i
+    //  diferència de fitxes (o només el signe, si no hi ha hagut temps) al final
+    int valor;
+    long ms;
+    long nodes;
+    long avaluacions;
+    long ttConsultes;
+    long ttEncerts;
+    long ttTalls;
+    long ttColisions;
+    //  nodes tallats per Multi-ProbCut
+    long probCutTalls;
+    //  consultes dels fills a la taula abans d'expandir-los (ETC) i talls
+    long etcConsultes;
+    long etcTalls;
+    final long[] tallsPerIndex = new long[INDEXS];
+    double ttOcupacio;
+    double ttObsoletes;
+    final List<Iteracio> iteracions = new ArrayList<>();
+
+    /**
+     * Apunta un tall beta.
+     * @param index posició del moviment que ha tallat dins l'ordre.
+     */
+    void tall(int index) {
+        tallsPerIndex[Math.min(index, INDEXS - 1)]++;
+    }
+
+    /**
+     * Suma els comptadors d'un altre fil; les iteracions només les porta
+     * el principal.
+     */
+    void suma(SearchStats altre) {
+        if (altre == null) {
+            return;
+        }
+        nodes += altre.nodes;
+        avaluacions += altre.avaluacions;
+        ttConsultes += altre.ttConsultes;
+        ttEncerts += altre.ttEncerts;
+        ttTalls += altre.ttTalls;
+        ttColisions += altre.ttColisions;
+        probCutTalls += altre.probCutTalls;
+        etcConsultes += altre.etcConsultes;
+        etcTalls += altre.etcTalls;
+        for (int i = 0; i < INDEXS; i++) {
+            tallsPerIndex[i] += altre.tallsPerIndex[i];
+        }
+    }
+
+    public String getOrigen() {
+        return origen;
+    }
+
+    public int getProfunditat() {
+        return profunditat;
+    }
+
+    public int getBuits() {
+        return buits;
+    }
+
+    public int getValor() {
+        return valor;
+    }
+
+    public long getMs() {
+        return ms;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNodesPerSegon() {
+        return ms > 0 ? nodes * 1000 / ms : nodes * 1000;
+    }
+
+    public long getAvaluacions() {
+        return avaluacions;
+    }
+
+    public long getTTConsultes() {
+        return ttConsultes;
+    }
+
+    public long getTTEncerts() {
+        return ttEncerts;
+    }
+
+    /**
+     * @return consultes en què el valor guardat ja resolia el node.
+     */
+    public long getTTTalls() {
+        return ttTalls;
+    }
+
+    /**
+     * @return escriptures que han expulsat una altra posició de la taula.
+     */
+    public long getTTColisions() {
+        return ttColisions;
+    }
+
+    /**
+     * @return nodes tallats per Multi-ProbCut sense la cerca completa.
+     */
+    public long getProbCutTalls() {
+        return probCutTalls;
+    }
+
+    /**
+     * @return consultes a la taula de fills encara no expandits (ETC).
+     */
+    public long getETCConsultes() {
+        return etcConsultes;
+    }
+
+    /**
+     * @return nodes resolts perquè la taula ja tenia un fill que els refutava.
+     */
+    public long getETCTalls() {
+        return etcTalls;
+    }
+
+    /**
+     * @return fracció de la taula ocupada per entrades d'aquesta cerca.
+     */
+    public double getTTOcupacio() {
+        return ttOcupacio;
+    }
+
+    /**
+     * @return fracció estimada de la taula amb entrades de jugades
+     * anteriors que aquesta cerca no ha tocat.
+     */
+    public double getTTObsoletes() {
+        return ttObsoletes;
+    }
+
+    /**
+     * @return talls beta per posició del moviment dins l'ordre; l'última
+     * posició acumula tots els de més enllà.
+     */
+    public long[] getTallsPerIndex() {
+        return tallsPerIndex.clone();
+    }
+
+    public long getTalls() {
+        long talls = 0;
+        for (long t : tallsPerIndex) {
+            talls += t;
+        }
+        return talls;
+    }
+
+    public List<Iteracio> getIteracions() {
+        return Collections.unmodifiableList(iteracions);
+    }
+
+    /**
+     * @return el factor de ramificació efectiu: quocient de nodes entre les
+     * dues últimes iteracions completes, 0 si no n'hi ha prou.
+     */
+    public double getEBF() {
+        Iteracio darrera = null, penultima = null;
+        for (Iteracio it : iteracions) {
+            if (it.completa) {
+                penultima = darrera;
+                darrera = it;
+            }
+        }
+        if (penultima == null || penultima.nodes == 0) {
+            return 0;
+        }
+        return (double) darrera.nodes / penultima.nodes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(origen).append(" prof=").append(profunditat)
+          .append(" nodes=").append(nodes).append(" ms=").append(ms)
+          .append(" nps=").append(getNodesPerSegon())
+          .append(" aval=").append(avaluacions)
+          .append(" tt=").append(ttEncerts).append('/').append(ttConsultes)
+          .append(" ttTalls=").append(ttTalls).append(" ttCol=").append(ttColisions)
+          .append(" probCut=").append(probCutTalls)
+          .append(" etc=").append(etcTalls).append('/').append(etcConsultes)
+          .append(String.format(" ttOcup=%.1f%%", 100 * ttOcupacio))
+          .append(String.format(" ttObs=%.1f%%", 100 * ttObsoletes))
+          .append(String.format(" ebf=%.2f", getEBF()))
+          .append(" talls=").append(tallsPerIndexText());
+        return sb.toString();
+    }
+
+    /**
+     * @return els talls per índex separats per comes, per als esdeveniments.
+     */
+    String tallsPerIndexText() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < INDEXS; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(tallsPerIndex[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+/**
+ * Gestió del temps d'una jugada amb IDS. A partir del pressupost de la
+ * jugada fixa dos límits:
+ *   - soft: passat aquest temps no es comença cap iteració nova;
+ *   - hard: la cerca en curs s'atura, encara que no hagi acabat.
+ * Abans de començar una iteració es prediu el que durarà multiplicant la
+ * durada de l'anterior pel factor de ramificació efectiu (el quocient entre
+ * les dues últimes iteracions); si no pot acabar abans del límit hard, no es
+ * comença i el temps no es gasta en una iteració que s'hauria de llençar.
+ * @author Arnau Roca y Henok Argudo
+ */
+public class TimeManager {
+    //  fracció del pressupost on són els límits soft i hard
+    static final double SOFT = 0.5;
+    static final double HARD = 0.95;
+    //  límits del factor de ramificació efectiu que es fa servir per predir
+    static final double EBF_MIN = 1.5;
+    static final double EBF_MAX = 8.0;
+    //  temps reservat per retornar el moviment
+    static final long MARGE_MS = 10;
+
+    private final long inici;
+    private final long soft;
+    private final long hard;
+    //  durada de les dues últimes iteracions acabades
+    private long darrera;
+    private long penultima;
+    private long iniciIteracio;
+
+    /**
+     * @param pressupostMs temps màxim de la jugada en ms.
+     */
+    public TimeManager(long pressupostMs) {
+        long pressupost = Math.max(1, pressupostMs - MARGE_MS) * 1_000_000L;
+        inici = System.nanoTime();
+        soft = inici + (long) (pressupost * SOFT);
+        hard = inici + (long) (pressupost * HARD);
+        iniciIteracio = inici;
+    }
+
+    /**
+     * Reparteix el temps que queda de rellotge entre les jugades que ens
+     * queden, que són aproximadament la meitat dels buits.
+     * @param restantMs temps de rellotge que ens queda en ms.
+     * @param buits caselles buides del tauler.
+     * @return el gestor de la jugada.
+     */
+    public static TimeManager perRellotge(long restantMs, int buits) {
+        int jugades = Math.max(1, (buits + 1) / 2);
+        return new TimeManager(restantMs / jugades);
+    }
+
+    /**
+     * Avisa que comença una iteració.
+     */
+    public void iniciaIteracio() {
+        iniciIteracio = System.nanoTime();
+    }
+
+    /**
+     * Avisa que s'ha acabat una iteració sencera.
+     */
+    public void iteracioAcabada() {
+        penultima = darrera;
+        darrera = System.nanoTime() - iniciIteracio;
+    }
+
+    /**
+     * @return el factor de ramificació efectiu de les dues últimes iteracions.
+     */
+    double ebf() {
+        if (penultima <= 0) {
+            return EBF_MAX;
+        }
+        return Math.max(EBF_MIN, Math.min(EBF_MAX, (double) darrera / penultima));
+    }
+
+    /**
+     * @return true si hi ha temps per començar una iteració i acabar-la.
+     */
+    public boolean potComencar() {
+        long ara = System.nanoTime();
+        if (ara >= soft) {
+            return false;
+        }
+        return ara + (long) (darrera * ebf()) <= hard;
+    }
+
+    /**
+     * @return true si s'ha passat el límit hard i cal aturar la cerca.
+     */
+    public boolean superatHard() {
+        return System.nanoTime() >= hard;
+    }
+
+    /**
+     * @return ms des que ha començat la jugada.
+     */
+    public long getElapsedMs() {
+        return (System.nanoTime() - inici) / 1_000_000;
+    }
+}
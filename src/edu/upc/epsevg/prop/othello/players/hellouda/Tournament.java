@@ -0,0 +1,381 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import edu.upc.epsevg.prop.othello.CellType;
+import edu.upc.epsevg.prop.othello.GameStatus;
+import edu.upc.epsevg.prop.othello.IPlayer;
+import edu.upc.epsevg.prop.othello.Move;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Enfrontament sense interfície entre dos jugadors: juga moltes partides en
+ * paral·lel, una per fil, i en treu el percentatge de punts, la diferència
+ * d'Elo amb el seu interval de confiança i els nodes per segon de cadascun.
+ *
+ * Cada obertura es juga dues vegades canviant els colors. Cada jugada té un
+ * temps màxim: passat aquest temps es crida timeout() del jugador. Si tot i
+ * així tarda més del marge, o fa un moviment il·legal, perd la partida.
+ *
+ * Ús: Tournament jugadorA jugadorB [opcions]
+ *   jugador          id[:prof], minimax[:prof] o el nom d'una classe IPlayer
+ *                    amb constructor sense paràmetres; id i minimax
+ *                    admeten :pat=fitxer (pesos de PatternEval) i id
+ *                    també :pc=fitxer (paràmetres de ProbCut) i :llindar=x
+ *   -partides=N      nombre de partides, per defecte dues per obertura
+ *   -fils=N          partides alhora, per defecte una per processador
+ *   -ms=N            temps per jugada en ms, per defecte 1000
+ *   -marge=N         ms de més abans de perdre per temps, per defecte 1000
+ *   -obertures=f     fitxer amb una partida per línia (f5d6c3...), les
+ *                    línies buides i les que comencen per # no compten
+ *   -mb=N            MB de taula de transposició de cada PlayerID, per
+ *                    defecte 64
+ * @author Arnau Roca y Henok Argudo
+ */
+public class Tournament {
+    /**
+     * Resultat d'una partida, des del punt de vista del jugador A.
+     */
+    static class Partida {
+        final int numero;
+        final String obertura;
+        final boolean aNegres;
+        //  1 si guanya A, 0.5 si empaten, 0 si guanya B
+        double punts;
+        int fitxesA, fitxesB;
+        //  motiu si s'ha acabat per temps o per un moviment il·legal
+        String incidencia;
+        final long[] nodes = new long[2];
+        final long[] ns = new long[2];
+
+        Partida(int numero, String obertura, boolean aNegres) {
+            this.numero = numero;
+            this.obertura = obertura;
+            this.aNegres = aNegres;
+        }
+    }
+
+    private final Supplier<IPlayer> jugadorA;
+    private final Supplier<IPlayer> jugadorB;
+    private final long ms;
+    private final long marge;
+    private final ScheduledExecutorService rellotge = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tournament-timeout");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param jugadorA dona el jugador A de cada partida.
+     * @param jugadorB dona el jugador B.
+     * @param ms temps per jugada en ms.
+     * @param marge ms de més que té un jugador després del timeout().
+     */
+    public Tournament(Supplier<IPlayer> jugadorA, Supplier<IPlayer> jugadorB, long ms, long marge) {
+        this.jugadorA = jugadorA;
+        this.jugadorB = jugadorB;
+        this.ms = ms;
+        this.marge = marge;
+    }
+
+    /**
+     * Juga una partida des d'una obertura.
+     * @param numero número de la partida, per als informes.
+     * @param obertura caselles ja jugades, en el format de Perft.reprodueix.
+     * @param aNegres si A és el jugador que surt de la posició inicial.
+     * @return el resultat.
+     */
+    Partida juga(int numero, String obertura, boolean aNegres) {
+        Partida partida = new Partida(numero, obertura, aNegres);
+        IPlayer[] jugadors = {jugadorA.get(), jugadorB.get()};
+        try {
+            GameStatus s = Perft.reprodueix(obertura);
+            CellType colorA = aNegres ? CellType.PLAYER1 : CellType.PLAYER2;
+            while (true) {
+                if (s.getMoves().isEmpty()) {
+                    s.movePiece(null);
+                    if (s.getMoves().isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                int torn = s.getCurrentPlayer() == colorA ? 0 : 1;
+                IPlayer jugador = jugadors[torn];
+                ScheduledFuture<?> avis = rellotge.schedule(jugador::timeout, ms, TimeUnit.MILLISECONDS);
+                long t0 = System.nanoTime();
+                Move m = jugador.move(new GameStatus(s));
+                long ns = System.nanoTime() - t0;
+                avis.cancel(false);
+                partida.nodes[torn] += m.getNumerOfNodesExplored();
+                partida.ns[torn] += ns;
+                Point to = m.getTo();
+                if (ns > (ms + marge) * 1_000_000L) {
+                    partida.incidencia = (torn == 0 ? "A" : "B") + " perd per temps (" + ns / 1_000_000 + " ms)";
+                } else if (to == null || !s.getMoves().contains(to)) {
+                    partida.incidencia = (torn == 0 ? "A" : "B") + " fa un moviment il·legal " + to;
+                }
+                if (partida.incidencia != null) {
+                    partida.punts = torn == 0 ? 0 : 1;
+                    return partida;
+                }
+                s.movePiece(to);
+            }
+            partida.fitxesA = s.getScore(colorA);
+            partida.fitxesB = s.getScore(CellType.opposite(colorA));
+            partida.punts = partida.fitxesA > partida.fitxesB ? 1 : partida.fitxesA < partida.fitxesB ? 0 : 0.5;
+            return partida;
+        } finally {
+            //  els PlayerID no es reutilitzen: se'n tanquen els fils
+            for (IPlayer j : jugadors) {
+                if (j instanceof PlayerID) {
+                    ((PlayerID) j).close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Juga totes les partides repartides entre els fils; cada obertura es
+     * juga primer amb A de negres i després amb A de blanques.
+     * @param obertures les obertures, com a mínim una.
+     * @param partides nombre total de partides.
+     * @param fils partides alhora.
+     * @return els resultats, en l'ordre en què s'han acabat.
+     */
+    public List<Partida> juga(List<String> obertures, int partides, int fils)
+            throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(fils);
+        CompletionService<Partida> acabades = new ExecutorCompletionService<>(pool);
+        for (int i = 0; i < partides; i++) {
+            final int numero = i;
+            String obertura = obertures.get((i / 2) % obertures.size());
+            acabades.submit(() -> juga(numero, obertura, numero % 2 == 0));
+        }
+        List<Partida> resultats = new ArrayList<>();
+        Resum resum = new Resum();
+        try {
+            for (int i = 0; i < partides; i++) {
+                Partida p = acabades.take().get();
+                resultats.add(p);
+                resum.afegeix(p);
+                if (p.incidencia != null) {
+                    System.out.println("partida " + p.numero + " [" + p.obertura + "]: " + p.incidencia);
+                }
+                if ((i + 1) % Math.max(1, partides / 20) == 0 || i + 1 == partides) {
+                    System.out.println(resum.linia());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return resultats;
+    }
+
+    /**
+     * Acumula els resultats i en calcula l'Elo.
+     */
+    static class Resum {
+        int partides, guanyades, empatades, perdudes, incidencies;
+        final long[] nodes = new long[2];
+        final long[] ns = new long[2];
+
+        void afegeix(Partida p) {
+            partides++;
+            if (p.punts == 1) {
+                guanyades++;
+            } else if (p.punts == 0) {
+                perdudes++;
+            } else {
+                empatades++;
+            }
+            if (p.incidencia != null) {
+                incidencies++;
+            }
+            for (int i = 0; i < 2; i++) {
+                nodes[i] += p.nodes[i];
+                ns[i] += p.ns[i];
+            }
+        }
+
+        /**
+         * @return fracció de punts de A.
+         */
+        double puntuacio() {
+            return partides == 0 ? 0.5 : (guanyades + 0.5 * empatades) / partides;
+        }
+
+        /**
+         * @return la desviació típica de la puntuació mitjana.
+         */
+        double desviacio() {
+            if (partides < 2) {
+                return 0;
+            }
+            double mu = puntuacio();
+            double var = (guanyades * (1 - mu) * (1 - mu) + empatades * (0.5 - mu) * (0.5 - mu)
+                    + perdudes * mu * mu) / partides;
+            return Math.sqrt(var / partides);
+        }
+
+        /**
+         * @return la diferència d'Elo de A sobre B corresponent a la puntuació.
+         */
+        static double elo(double puntuacio) {
+            double p = Math.max(1e-6, Math.min(1 - 1e-6, puntuacio));
+            return -400 * Math.log10(1 / p - 1);
+        }
+
+        /**
+         * @return la meitat de l'interval de confiança del 95% de l'Elo.
+         */
+        double errorElo() {
+            double mu = puntuacio(), d = 1.96 * desviacio();
+            return (elo(mu + d) - elo(mu - d)) / 2;
+        }
+
+        long nodesPerSegon(int jugador) {
+            return ns[jugador] > 0 ? (long) (nodes[jugador] * 1e9 / ns[jugador]) : 0;
+        }
+
+        String linia() {
+            return String.format("%5d partides  +%d =%d -%d  %.1f%%  Elo %+.1f +/- %.1f  nps A=%d B=%d%s",
+                    partides, guanyades, empatades, perdudes, 100 * puntuacio(), elo(puntuacio()), errorElo(),
+                    nodesPerSegon(0), nodesPerSegon(1), incidencies > 0 ? "  incidències=" + incidencies : "");
+        }
+    }
+
+    /**
+     * @param spec id[:prof][:pat=fitxer][:pc=fitxer][:llindar=x],
+     * minimax[:prof][:pat=fitxer] o el nom d'una classe IPlayer.
+     * @param ttMB MB de taula de transposició de cada PlayerID.
+     * @return una funció que dona el jugador de cada partida: un de nou
+     * cada vegada, llevat de minimax, que es reutilitza dins de cada fil.
+     * @throws IOException si no es poden llegir els pesos o els paràmetres
+     * de ProbCut.
+     */
+    static Supplier<IPlayer> jugador(String spec, int ttMB) throws IOException {
+        String[] parts = spec.split(":");
+        int prof = -1;
+        ProbCut probCut = null;
+        double llindar = ProbCut.LLINDAR;
+        //  null per l'avaluació per defecte de cada jugador
+        Evaluator avaluacio = null;
+        for (int i = 1; i < parts.length; i++) {
+            if (parts[i].startsWith("pat=")) {
+                //  el fitxer es projecta un sol cop i el comparteixen tots
+                avaluacio = PatternEval.load(Path.of(parts[i].substring(4)));
+            } else if (parts[i].startsWith("pc=")) {
+                probCut = ProbCut.load(Path.of(parts[i].substring(3)));
+            } else if (parts[i].startsWith("llindar=")) {
+                llindar = Double.parseDouble(parts[i].substring(8));
+            } else {
+                prof = Integer.parseInt(parts[i]);
+            }
+        }
+        final int profMax = prof;
+        final ProbCut pc = probCut;
+        final double llindarPc = llindar;
+        final Evaluator avaluador = avaluacio;
+        switch (parts[0]) {
+            case "id":
+                return () -> {
+                    PlayerID p = avaluador != null ? new PlayerID(ttMB, 1, avaluador) : new PlayerID(ttMB);
+                    if (profMax > 0) {
+                        p.setProfMax(profMax);
+                    }
+                    p.setProbCut(pc);
+                    p.setProbCutThreshold(llindarPc);
+                    return p;
+                };
+            case "minimax":
+                //  PlayerMiniMax no guarda res entre jugades però té un
+                //  ForkJoinPool propi: se'n fa un per fil de partides
+                ThreadLocal<PlayerMiniMax> perFil = ThreadLocal.withInitial(() -> {
+                    PlayerMiniMax p = avaluador != null ? new PlayerMiniMax(1, avaluador) : new PlayerMiniMax(1);
+                    if (profMax > 0) {
+                        p.setProfMax(profMax);
+                    }
+                    return p;
+                });
+                return perFil::get;
+            default:
+                return () -> {
+                    try {
+                        return (IPlayer) Class.forName(spec).getDeclaredConstructor().newInstance();
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalArgumentException("No es pot crear el jugador " + spec, e);
+                    }
+                };
+        }
+    }
+
+    /**
+     * @return les partides del fitxer, o només la posició inicial si no n'hi ha.
+     */
+    static List<String> obertures(String fitxer) throws IOException {
+        List<String> obertures = new ArrayList<>();
+        if (fitxer != null) {
+            for (String linia : Files.readAllLines(Path.of(fitxer))) {
+                linia = linia.trim();
+                if (!linia.isEmpty() && !linia.startsWith("#")) {
+                    Perft.reprodueix(linia);
+                    obertures.add(linia);
+                }
+            }
+        }
+        if (obertures.isEmpty()) {
+            obertures.add("");
+        }
+        return obertures;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length < 2) {
+            System.err.println("Ús: Tournament jugadorA jugadorB [-partides=N] [-fils=N] [-ms=N] [-marge=N]"
+                    + " [-obertures=fitxer] [-mb=N]");
+            System.exit(1);
+        }
+        int partides = -1, fils = Runtime.getRuntime().availableProcessors(), mb = 64;
+        long ms = 1000, marge = 1000;
+        String fitxer = null;
+        for (int i = 2; i < args.length; i++) {
+            String arg = args[i];
+            String valor = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("-partides=")) {
+                partides = Integer.parseInt(valor);
+            } else if (arg.startsWith("-fils=")) {
+                fils = Integer.parseInt(valor);
+            } else if (arg.startsWith("-ms=")) {
+                ms = Long.parseLong(valor);
+            } else if (arg.startsWith("-marge=")) {
+                marge = Long.parseLong(valor);
+            } else if (arg.startsWith("-obertures=")) {
+                fitxer = valor;
+            } else if (arg.startsWith("-mb=")) {
+                mb = Integer.parseInt(valor);
+            } else {
+                throw new IllegalArgumentException("Opció desconeguda " + arg);
+            }
+        }
+        List<String> obertures = obertures(fitxer);
+        if (partides < 0) {
+            partides = 2 * obertures.size();
+        }
+        System.out.println("A=" + args[0] + " B=" + args[1] + " partides=" + partides + " fils=" + fils
+                + " ms=" + ms + " obertures=" + obertures.size());
+        Tournament torneig = new Tournament(jugador(args[0], mb), jugador(args[1], mb), ms, marge);
+        torneig.juga(obertures, partides, fils);
+    }
+}
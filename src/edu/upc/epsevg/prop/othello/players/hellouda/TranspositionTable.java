@@ -0,0 +1,319 @@
+package edu.upc.epsevg.prop.othello.players.hellouda;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Taula de transposició sobre un únic long[]: cada entrada són dos long
+ * (clau de Zobrist i dades empaquetades) i cada bucket agrupa 4 entrades,
+ * 64 bytes, una línia de cache. Guardar una entrada no crea cap objecte.
+ * La taula es pot compartir entre fils sense bloquejos: a la primera paraula
+ * es guarda la clau xor les dades, de manera que una entrada escrita a mitges
+ * per dos fils alhora no passa la comprovació i es tracta com a absent.
+ *
+ * La taula es conserva d'una jugada a l'altra. Cada jugada és una generació
+ * nova; una entrada que es consulta passa a la generació actual i les que
+ * no s'han tocat en tota la cerca queden obsoletes, que són les primeres que
+ * se substitueixen.
+ *
+ * La memòria es reserva a trossos de com a molt 8 MB la primera vegada que
+ * s'hi escriu, de manera que crear la taula no costa res i la part que una
+ * partida curta no fa servir no s'arriba a reservar. Amb taules grans val la
+ * pena arrencar la JVM amb -XX:+UseTransparentHugePages (o
+ * -XX:+UseLargePages), que redueix les fallades de TLB dels accessos a
+ * l'atzar.
+ *
+ * Format de les dades:
+ *   bits  0-31 heurística
+ *   bits 32-39 casella del millor fill (-1 si no n'hi ha)
+ *   bits 40-47 nivells per sota del node
+ *   bit  48    true=Exacte, false=Poda
+ *   bits 49-56 generació (edat) en què es va guardar
+ *   bit  57    entrada vàlida, perquè unes dades mai valguin MISS
+ *   bit  58    si no és exacte: true=cota inferior, false=cota superior
+ * @author Arnau Roca y Henok Argudo
+ */
+public class TranspositionTable {
+    //  valor que retorna probe quan la posició no hi és
+    public static final long MISS = 0;
+
+    static final int ENTRADES_PER_BUCKET = 4;
+    static final int LONGS_PER_BUCKET = 2 * ENTRADES_PER_BUCKET;
+    static final int BYTES_PER_BUCKET = 8 * LONGS_PER_BUCKET;
+    //  buckets de cada tros: 2^17 buckets són 8 MB
+    static final int BITS_TROS = 17;
+    //  límits de la mida per defecte, en MB
+    static final int MIN_MB_DEFECTE = 16;
+    static final int MAX_MB_DEFECTE = 1024;
+
+    private static final long VALID = 1L << 57;
+    private static final long EDAT_MASK = 0xFFL << 49;
+    //  buckets que es miren per estimar l'ocupació
+    static final int MOSTRA_OCUPACIO = 1000;
+
+    //  tipus de valor que es guarda
+    public static final int EXACTA = 0;
+    public static final int INFERIOR = 1;
+    public static final int SUPERIOR = 2;
+
+    private static final VarHandle TROS = MethodHandles.arrayElementVarHandle(long[][].class);
+
+    //  trossos de la taula, null fins que s'hi escriu
+    private final long[][] trossos;
+    private final int bitsTros;
+    private final long mask;
+    //  l'escriu només qui crida newSearch, però la llegeixen tots els fils
+    private volatile int generation;
+
+    /**
+     * Crea una taula de com a molt sizeMB megabytes, arrodonida a una
+     * potència de dos de buckets; no reserva res fins que s'hi escriu.
+     * @param sizeMB mida màxima de la taula en MB.
+     */
+    public TranspositionTable(int sizeMB) {
+        long buckets = Math.max(1, ((long) sizeMB << 20) / BYTES_PER_BUCKET);
+        buckets = Long.highestOneBit(buckets);
+        bitsTros = Math.min(BITS_TROS, Long.numberOfTrailingZeros(buckets));
+        trossos = new long[(int) (buckets >>> bitsTros)][];
+        mask = buckets - 1;
+        generation = 0;
+    }
+
+    /**
+     * Mida per defecte: una quarta part del heap màxim, arrodonida a una
+     * potència de dos i entre MIN_MB_DEFECTE i MAX_MB_DEFECTE.
+     * @return la mida en MB.
+     */
+    public static int defaultSizeMB() {
+        long mb = Runtime.getRuntime().maxMemory() / 4 >> 20;
+        mb = Math.max(MIN_MB_DEFECTE, Math.min(MAX_MB_DEFECTE, mb));
+        return (int) Long.highestOneBit(mb);
+    }
+
+    /**
+     * Avisa que comença una cerca nova; les entrades de cerques anteriors
+     * passen a ser les primeres candidates a ser substituïdes. Si diverses
+     * cerques comparteixen la taula, l'ha de cridar un sol fil, no cada
+     * cerca.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * @return els bytes que ocupen els trossos reservats fins ara.
+     */
+    public long getBytesUsed() {
+        long bytes = 0;
+        for (long[] tros : trossos) {
+            if (tros != null) {
+                bytes += (long) tros.length * Long.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return el nombre d'entrades que hi caben.
+     */
+    public long getCapacity() {
+        return (mask + 1) * ENTRADES_PER_BUCKET;
+    }
+
+    /**
+     * @return el tros on va la posició, o null si encara no està reservat.
+     */
+    private long[] tros(long hash) {
+        return trossos[(int) ((hash & mask) >>> bitsTros)];
+    }
+
+    /**
+     * @return el tros on va la posició, reservant-lo si cal. Si dos fils el
+     * reserven alhora, es queden tots dos amb el primer que s'ha publicat.
+     */
+    private long[] reservaTros(long hash) {
+        int i = (int) ((hash & mask) >>> bitsTros);
+        long[] tros = trossos[i];
+        if (tros == null) {
+            long[] nou = new long[LONGS_PER_BUCKET << bitsTros];
+            if (TROS.compareAndSet(trossos, i, (long[]) null, nou)) {
+                tros = nou;
+            } else {
+                tros = (long[]) TROS.getVolatile(trossos, i);
+            }
+        }
+        return tros;
+    }
+
+    /**
+     * @return la posició del bucket dins del seu tros.
+     */
+    private int bucket(long hash) {
+        return (int) (hash & mask & ((1L << bitsTros) - 1)) * LONGS_PER_BUCKET;
+    }
+
+    /**
+     * Busca una posició a la taula. Si l'entrada és d'una generació
+     * anterior, se li posa l'actual perquè la cerca encara hi arriba.
+     * @param hash hash de Zobrist de la posició.
+     * @return les dades empaquetades o MISS si no hi és.
+     */
+    public long probe(long hash) {
+        long[] table = tros(hash);
+        if (table == null) {
+            return MISS;
+        }
+        int base = bucket(hash);
+        int gen = generation;
+        for (int i = base; i < base + LONGS_PER_BUCKET; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == hash && data != MISS) {
+                if (age(data) != gen) {
+                    data = (data & ~EDAT_MASK) | (long) gen << 49;
+                    table[i] = hash ^ data;
+                    table[i + 1] = data;
+                }
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Guarda una posició. Dins del bucket es reutilitza l'entrada de la
+     * mateixa posició o una de buida; si no n'hi ha, se substitueix una
+     * d'obsoleta, la més vella i amb menys nivells per sota, i només si totes
+     * són d'aquesta cerca, la que té menys nivells per sota.
+     * @param hash hash de Zobrist de la posició.
+     * @param move casella del millor fill o -1.
+     * @param depth nivells per sota del node.
+     * @param heur heurística del node.
+     * @param cota EXACTA, INFERIOR (el valor real és més gran o igual) o
+     *             SUPERIOR (el valor real és més petit o igual).
+     * @return true si s'ha expulsat l'entrada d'una altra posició.
+     */
+    public boolean store(long hash, int move, int depth, int heur, int cota) {
+        long[] table = reservaTros(hash);
+        int base = bucket(hash);
+        int gen = generation;
+        int victim = base;
+        int pitjor = Integer.MAX_VALUE;
+        boolean colisio = true;
+        for (int i = base; i < base + LONGS_PER_BUCKET; i += 2) {
+            long data = table[i + 1];
+            if (data == MISS || (table[i] ^ data) == hash) {
+                victim = i;
+                colisio = false;
+                break;
+            }
+            int edat = edat(data, gen);
+            int valor = edat == 0 ? 256 + depth(data) : depth(data) - 4 * edat;
+            if (valor < pitjor) {
+                pitjor = valor;
+                victim = i;
+            }
+        }
+        long data = pack(move, depth, heur, cota, gen);
+        table[victim] = hash ^ data;
+        table[victim + 1] = data;
+        return colisio;
+    }
+
+    /**
+     * Estima l'ocupació mirant buckets repartits per tota la taula, com el
+     * hashfull de UCI.
+     * @return fracció de les entrades mostrejades guardades en aquesta cerca.
+     */
+    public double getFillRate() {
+        return mostra(false);
+    }
+
+    /**
+     * @return fracció estimada d'entrades obsoletes, de generacions anteriors.
+     */
+    public double getStaleRate() {
+        return mostra(true);
+    }
+
+    /**
+     * @return nombre estimat d'entrades obsoletes de tota la taula.
+     */
+    public long getStaleEntries() {
+        return (long) (getStaleRate() * (mask + 1) * ENTRADES_PER_BUCKET);
+    }
+
+    /**
+     * Mira MOSTRA_OCUPACIO buckets a la mateixa distància entre ells; els
+     * dels trossos que encara no s'han reservat compten com a buits.
+     * @param obsoletes true per comptar les entrades d'altres generacions,
+     *                  false per les d'aquesta.
+     * @return fracció de les entrades mostrejades que ho són.
+     */
+    private double mostra(boolean obsoletes) {
+        long buckets = Math.min(MOSTRA_OCUPACIO, mask + 1);
+        long pas = (mask + 1) / buckets;
+        long trosMask = (1L << bitsTros) - 1;
+        int gen = generation;
+        int n = 0;
+        for (long b = 0; b < buckets; b++) {
+            long bucket = b * pas;
+            long[] table = trossos[(int) (bucket >>> bitsTros)];
+            if (table == null) {
+                continue;
+            }
+            int base = (int) (bucket & trosMask) * LONGS_PER_BUCKET;
+            for (int i = base; i < base + LONGS_PER_BUCKET; i += 2) {
+                long data = table[i + 1];
+                if (data != MISS && (edat(data, gen) != 0) == obsoletes) {
+                    n++;
+                }
+            }
+        }
+        return (double) n / (buckets * ENTRADES_PER_BUCKET);
+    }
+
+    static long pack(int move, int depth, int heur, int cota, int generation) {
+        return (heur & 0xFFFFFFFFL)
+                | (long) (move & 0xFF) << 32
+                | (long) (depth & 0xFF) << 40
+                | (cota == EXACTA ? 1L << 48 : 0)
+                | (cota == INFERIOR ? 1L << 58 : 0)
+                | (long) (generation & 0xFF) << 49
+                | VALID;
+    }
+
+    public static int heur(long data) {
+        return (int) data;
+    }
+
+    public static int move(long data) {
+        return (byte) (data >>> 32);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 40) & 0xFF;
+    }
+
+    public static boolean isExact(long data) {
+        return (data & (1L << 48)) != 0;
+    }
+
+    public static boolean isLowerBound(long data) {
+        return (data & (1L << 58)) != 0;
+    }
+
+    public static boolean isUpperBound(long data) {
+        return (data & (1L << 48 | 1L << 58)) == 0;
+    }
+
+    static int age(long data) {
+        return (int) (data >>> 49) & 0xFF;
+    }
+
+    /**
+     * @return quantes generacions fa que es va guardar l'entrada.
+     */
+    private static int edat(long data, int generation) {
+        return (generation - age(data)) & 0xFF;
+    }
+}